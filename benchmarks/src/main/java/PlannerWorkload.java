@@ -0,0 +1,110 @@
+import routeplanner.benchmarks.Workload;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Supplier;
+
+/** The planner side of {@link Workload}, on a {@link SyntheticNetworks} instance. */
+public class PlannerWorkload implements Workload {
+    private static final int BUNDLES = 1024;
+
+    private final RailNetwork network;
+    private final List<Package> packages;
+    private final List<Train> trains;
+    private final long seed;
+    private Routing routing;
+
+    public PlannerWorkload(String shape, int stations, int edges, int packages, int trains, long seed) {
+        this.network = SyntheticNetworks.network(SyntheticNetworks.Shape.valueOf(shape), stations, edges, seed);
+        this.packages = SyntheticNetworks.packages(network, packages, seed);
+        this.trains = SyntheticNetworks.trains(network, trains, seed);
+        this.seed = seed;
+    }
+
+    private Routing routing() {
+        if (routing == null) {
+            routing = ComputePath.compute(network);
+        }
+        return routing;
+    }
+
+    /** Trains as the instance starts them; planning moves the ones it is given. */
+    private List<Train> freshTrains() {
+        List<Train> fresh = new ArrayList<>(trains.size());
+        for (Train train : trains) {
+            fresh.add(new Train(train.getName(), train.getCapacityInKg(), train.getCurrentStation()));
+        }
+        return fresh;
+    }
+
+    @Override
+    public int stations() {
+        return network.size();
+    }
+
+    @Override
+    public Supplier<Object> precompute(String storage, int threads) {
+        ComputePath.Storage kind = ComputePath.Storage.valueOf(storage);
+        return () -> ComputePath.compute(network, kind, threads);
+    }
+
+    @Override
+    public IntFunction<Object> shortestPathTree(String queue) {
+        StationQueue stationQueue = StationQueue.Kind.valueOf(queue).create();
+        return source -> ComputePath.djikstra(network, source, stationQueue);
+    }
+
+    @Override
+    public Supplier<Object> auctionRound() {
+        PlanningContext context = new PlanningContext(routing(), trains, packages);
+        return () -> DeliveryPlanner.runAuctionAlgorithm(context, DeliveryPlanner.AuctionWeights.DEFAULT, 1, null);
+    }
+
+    @Override
+    public Supplier<Object> auction() {
+        PlanningContext context = new PlanningContext(routing(), trains, packages);
+        return () -> DeliveryPlanner.auctionPlan(context, DeliveryPlanner.AuctionWeights.DEFAULT);
+    }
+
+    @Override
+    public IntToDoubleFunction costEvaluation(int bundleSize) {
+        Routing routing = routing();
+        Random random = new Random(seed + 3);
+        int[] starts = new int[BUNDLES];
+        int[][] pickups = new int[BUNDLES][bundleSize];
+        int[][] destinations = new int[BUNDLES][bundleSize];
+        int[][] weights = new int[BUNDLES][bundleSize];
+        for (int b = 0; b < BUNDLES; b++) {
+            starts[b] = routing.stationId(trains.get(random.nextInt(trains.size())).getCurrentStation());
+            for (int i = 0; i < bundleSize; i++) {
+                Package pkg = packages.get(random.nextInt(packages.size()));
+                pickups[b][i] = routing.stationId(pkg.getStartingNode().getName());
+                destinations[b][i] = routing.stationId(pkg.getEndNode().getName());
+                weights[b][i] = pkg.getWeightInKg();
+            }
+        }
+        return index -> {
+            int b = index & (BUNDLES - 1);
+            RouteCostKernel kernel = RouteCostKernel.forCurrentThread();
+            kernel.clear();
+            for (int i = 0; i < bundleSize; i++) {
+                kernel.add(pickups[b][i], destinations[b][i], weights[b][i]);
+            }
+            return kernel.deliveryTime(routing, starts[b]) + kernel.finalLocation(routing, starts[b]);
+        };
+    }
+
+    @Override
+    public Supplier<Object> assignPackage() {
+        Routing routing = routing();
+        return () -> {
+            PlanningContext context = new PlanningContext(routing, freshTrains(), packages);
+            DeliveryPlanner.assignPackage(context, Writer.nullWriter());
+            return context;
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package routeplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A whole {@code DeliveryPlanner.assignPackage} run on precomputed shortest paths. Local search
+ * works to a wall-clock budget, which would only time the budget, so it is switched off here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Drouteplanner.search.ms=0")
+@State(Scope.Thread)
+public class AssignPackageBenchmark {
+    private Supplier<Object> assign;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticInstance instance) {
+        assign = instance.workload.assignPackage();
+    }
+
+    @Benchmark
+    public Object assignPackage() {
+        return assign.get();
+    }
+}
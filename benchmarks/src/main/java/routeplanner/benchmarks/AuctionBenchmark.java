@@ -0,0 +1,34 @@
+package routeplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/** The auction on precomputed shortest paths: its first round alone, and the whole auction with its plan. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AuctionBenchmark {
+    private Supplier<Object> round;
+    private Supplier<Object> auction;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticInstance instance) {
+        round = instance.workload.auctionRound();
+        auction = instance.workload.auction();
+    }
+
+    @Benchmark
+    public Object auctionRound() {
+        return round.get();
+    }
+
+    @Benchmark
+    public Object auction() {
+        return auction.get();
+    }
+}
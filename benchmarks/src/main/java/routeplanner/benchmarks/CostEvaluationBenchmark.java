@@ -0,0 +1,31 @@
+package routeplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToDoubleFunction;
+
+/** One bid's bundle simulation, as the auction runs it for every train it asks. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CostEvaluationBenchmark {
+    @Param({"4", "12"})
+    public int bundleSize;
+
+    private IntToDoubleFunction evaluation;
+    private int bundle;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticInstance instance) {
+        evaluation = instance.workload.costEvaluation(bundleSize);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return evaluation.applyAsDouble(bundle++);
+    }
+}
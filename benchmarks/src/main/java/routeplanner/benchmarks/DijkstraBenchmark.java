@@ -0,0 +1,34 @@
+package routeplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/** One single-source Dijkstra per call, cycling through the sources, with each priority queue. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DijkstraBenchmark {
+    @Param({"RADIX", "DIAL", "BINARY_HEAP", "JDK"})
+    public String queue;
+
+    private IntFunction<Object> tree;
+    private int stations;
+    private int source;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticInstance instance) {
+        tree = instance.workload.shortestPathTree(queue);
+        stations = instance.workload.stations();
+    }
+
+    @Benchmark
+    public Object singleSource() {
+        source = source + 1 == stations ? 0 : source + 1;
+        return tree.apply(source);
+    }
+}
@@ -0,0 +1,33 @@
+package routeplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/** All-pairs precomputation, as every run pays it before planning. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ShortestPathBenchmark {
+    @Param({"PATHS", "COMPACT"})
+    public String storage;
+
+    @Param("1")
+    public int threads;
+
+    private Supplier<Object> precompute;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticInstance instance) {
+        precompute = instance.workload.precompute(storage, threads);
+    }
+
+    @Benchmark
+    public Object precompute() {
+        return precompute.get();
+    }
+}
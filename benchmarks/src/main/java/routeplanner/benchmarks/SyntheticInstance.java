@@ -0,0 +1,38 @@
+package routeplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A seeded {@code SyntheticNetworks} instance shared by every benchmark; override the sizes with
+ * {@code -p stations=...} and friends. The planner's shortest paths are computed once per trial,
+ * the first time a benchmark needs them.
+ */
+@State(Scope.Benchmark)
+public class SyntheticInstance {
+    @Param({"GRID", "GEOMETRIC", "HUB_AND_SPOKE"})
+    public String shape;
+
+    @Param("1000")
+    public int stations;
+
+    @Param("3000")
+    public int edges;
+
+    @Param("200")
+    public int packages;
+
+    @Param("24")
+    public int trains;
+
+    @Param("42")
+    public long seed;
+
+    Workload workload;
+
+    @Setup(Level.Trial)
+    public void generate() throws ReflectiveOperationException {
+        workload = (Workload) Class.forName("PlannerWorkload")
+                .getConstructor(String.class, int.class, int.class, int.class, int.class, long.class)
+                .newInstance(shape, stations, edges, packages, trains, seed);
+    }
+}
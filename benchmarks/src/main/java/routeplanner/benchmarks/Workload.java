@@ -0,0 +1,34 @@
+package routeplanner.benchmarks;
+
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Supplier;
+
+/**
+ * The planner operations the benchmarks time, prepared on one synthetic instance. The planner
+ * lives in the unnamed package, which code in a package cannot name and JMH will not generate
+ * benchmarks for, so its side ({@code PlannerWorkload}) is loaded by name once per trial and
+ * hands back plain functions; the measured call is just the function.
+ */
+public interface Workload {
+
+    int stations();
+
+    /** Solves every source into a new table of the given {@code ComputePath.Storage}. */
+    Supplier<Object> precompute(String storage, int threads);
+
+    /** One single-source Dijkstra from the station given, with the given {@code StationQueue.Kind}. */
+    IntFunction<Object> shortestPathTree(String queue);
+
+    /** One round of bids on every package, from an empty assignment. */
+    Supplier<Object> auctionRound();
+
+    /** The whole auction as planning runs it, up to its round limit, and the greedy plan built from it. */
+    Supplier<Object> auction();
+
+    /** Delivery time plus final station of one of the prepared bundles, chosen by index modulo their count. */
+    IntToDoubleFunction costEvaluation(int bundleSize);
+
+    /** Plans, executes and writes the instance with fresh trains, discarding the output. */
+    Supplier<Object> assignPackage();
+}
@@ -0,0 +1,71 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Package-to-train assignments kept together with each train's package set and assigned
+ * weight, so the auction can read a train's bundle and load without scanning every package.
+ */
+public class AssignmentIndex {
+    private final Map<Package, Train> assignments = new HashMap<>();
+    private final Map<Train, Set<Package>> packagesByTrain = new HashMap<>();
+    private final Map<Train, Integer> loads = new HashMap<>();
+
+    // bundle fingerprint: sum of well-mixed per-package hashes, updated as packages move
+    private final Map<Train, Long> fingerprints = new HashMap<>();
+    private final Map<Package, Long> packageHashes = new ConcurrentHashMap<>();
+    private final AtomicLong nextPackageId = new AtomicLong();
+
+    public Train trainOf(Package pkg) {
+        return assignments.get(pkg);
+    }
+
+    public void assign(Package pkg, Train train) {
+        Train previous = assignments.put(pkg, train);
+        if (previous == train) {
+            return;
+        }
+        if (previous != null) {
+            packagesByTrain.get(previous).remove(pkg);
+            loads.merge(previous, -pkg.getWeightInKg(), Integer::sum);
+            fingerprints.merge(previous, -packageHash(pkg), Long::sum);
+        }
+        packagesByTrain.computeIfAbsent(train, t -> new LinkedHashSet<>()).add(pkg);
+        loads.merge(train, pkg.getWeightInKg(), Integer::sum);
+        fingerprints.merge(train, packageHash(pkg), Long::sum);
+    }
+
+    /** Order-independent fingerprint of the train's package set; add {@link #packageHash} to extend it. */
+    public long fingerprint(Train train) {
+        return fingerprints.getOrDefault(train, 0L);
+    }
+
+    public long packageHash(Package pkg) {
+        return packageHashes.computeIfAbsent(pkg, p -> mix(nextPackageId.incrementAndGet()));
+    }
+
+    // splitmix64 finalizer, so sums of distinct ids practically never collide
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public Collection<Package> packagesOf(Train train) {
+        Set<Package> packages = packagesByTrain.get(train);
+        return packages == null ? Collections.emptySet() : Collections.unmodifiableSet(packages);
+    }
+
+    /** Weight of the packages assigned to the train, not counting what it already carries. */
+    public int assignedLoad(Train train) {
+        return loads.getOrDefault(train, 0);
+    }
+
+    public int size() {
+        return assignments.size();
+    }
+
+    public Map<Package, Train> asMap() {
+        return Collections.unmodifiableMap(assignments);
+    }
+}
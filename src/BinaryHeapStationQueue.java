@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+/**
+ * Indexed binary heap over primitive station ids with a real decrease-key,
+ * so every station is in the heap at most once.
+ */
+public class BinaryHeapStationQueue implements StationQueue {
+    private int[] heap = new int[0];
+    private int[] positions = new int[0];
+    private int[] keys = new int[0];
+    private int size;
+
+    @Override
+    public void reset(int stations, int maxEdgeWeight) {
+        if (heap.length < stations) {
+            heap = new int[stations];
+            positions = new int[stations];
+            keys = new int[stations];
+        }
+        Arrays.fill(positions, 0, stations, -1);
+        size = 0;
+    }
+
+    @Override
+    public void insertOrDecrease(int station, int distance) {
+        keys[station] = distance;
+        int position = positions[station];
+        if (position < 0) {
+            position = size++;
+            heap[position] = station;
+            positions[station] = position;
+        }
+        siftUp(position);
+    }
+
+    @Override
+    public int poll() {
+        if (size == 0) {
+            return RailNetwork.NO_STATION;
+        }
+        int top = heap[0];
+        positions[top] = -1;
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int position) {
+        int station = heap[position];
+        int key = keys[station];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentStation = heap[parent];
+            if (keys[parentStation] <= key) {
+                break;
+            }
+            heap[position] = parentStation;
+            positions[parentStation] = position;
+            position = parent;
+        }
+        heap[position] = station;
+        positions[station] = position;
+    }
+
+    private void siftDown(int position) {
+        int station = heap[position];
+        int key = keys[station];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[child]] = position;
+            position = child;
+        }
+        heap[position] = station;
+        positions[station] = position;
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary plan for downstream systems. The header holds magic, version, the station and
+ * train names (each a count followed by modified-UTF-8 strings) and the packages (a count, then
+ * per package its name, weight in kg, origin and destination station). Every hop is then a record
+ * of ints: time, train, from station, to station, a flag for reaching a stop, and the packages
+ * picked up at the from station and delivered at the to station. Each of the two package sets is
+ * written as ranges of consecutive ids: the number of ranges, then a first id and a length per
+ * range. Ids index the header's tables; the file ends after the last record. A package whose
+ * origin is its destination is delivered without a hop, so it appears in no record.
+ */
+public class BinaryMoveLog implements MoveLog, Closeable {
+    public static final int MAGIC = 0x52504d56; // "RPMV"
+    public static final int VERSION = 2;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final DataOutputStream out;
+    private int[] sorted = new int[16];
+
+    private BinaryMoveLog(DataOutputStream out) {
+        this.out = out;
+    }
+
+    public static BinaryMoveLog open(Path file, RailNetwork network, List<Train> trains, List<Package> packages) {
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(network.size());
+            for (int station = 0; station < network.size(); station++) {
+                out.writeUTF(network.nameOf(station));
+            }
+            out.writeInt(trains.size());
+            for (Train train : trains) {
+                out.writeUTF(train.getName());
+            }
+            out.writeInt(packages.size());
+            for (Package pkg : packages) {
+                out.writeUTF(pkg.getName());
+                out.writeInt(pkg.getWeightInKg());
+                out.writeInt(network.idOf(pkg.getStartingNode().getName()));
+                out.writeInt(network.idOf(pkg.getEndNode().getName()));
+            }
+            return new BinaryMoveLog(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + file, e);
+        }
+    }
+
+    @Override
+    public void move(int time, int train, int from, int to, int[] pickups, int pickupCount, int[] deliveries,
+                     int deliveryCount, boolean arrives) {
+        try {
+            out.writeInt(time);
+            out.writeInt(train);
+            out.writeInt(from);
+            out.writeInt(to);
+            out.writeInt(arrives ? 1 : 0);
+            writeRanges(pickups, pickupCount);
+            writeRanges(deliveries, deliveryCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write moves", e);
+        }
+    }
+
+    private void writeRanges(int[] packages, int count) throws IOException {
+        if (sorted.length < count) {
+            sorted = new int[Math.max(count, 2 * sorted.length)];
+        }
+        System.arraycopy(packages, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        int ranges = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1] + 1) {
+                ranges++;
+            }
+        }
+        out.writeInt(ranges);
+        for (int first = 0; first < count; ) {
+            int end = first + 1;
+            while (end < count && sorted[end] == sorted[end - 1] + 1) {
+                end++;
+            }
+            out.writeInt(sorted[first]);
+            out.writeInt(end - first);
+            first = end;
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write moves", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write moves", e);
+        }
+    }
+}
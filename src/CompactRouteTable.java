@@ -0,0 +1,57 @@
+/**
+ * Keeps only a distance matrix and a predecessor table, 8 bytes per station pair.
+ * Paths are rebuilt by walking predecessors when a move is actually logged.
+ */
+public class CompactRouteTable implements TreeRouteTable {
+    private final int[][] distances;
+    private final int[][] previous;
+    private final double[] averageTimes;
+
+    public CompactRouteTable(int stations) {
+        distances = new int[stations][];
+        previous = new int[stations][];
+        averageTimes = new double[stations];
+    }
+
+    private CompactRouteTable(CompactRouteTable other) {
+        distances = other.distances.clone();
+        previous = other.previous.clone();
+        averageTimes = other.averageTimes.clone();
+    }
+
+    @Override
+    public int time(int from, int to) {
+        return distances[from][to];
+    }
+
+    @Override
+    public int[] path(int from, int to) {
+        if (distances[from][to] == ComputePath.UNREACHABLE) {
+            return null;
+        }
+        return ShortestPathTree.buildPath(previous[from], to);
+    }
+
+    @Override
+    public double averageTime(int from) {
+        return averageTimes[from];
+    }
+
+    @Override
+    public void store(ShortestPathTree tree) {
+        distances[tree.getSource()] = tree.getDistances();
+        previous[tree.getSource()] = tree.getPrevious();
+        averageTimes[tree.getSource()] = tree.averageTime();
+    }
+
+    @Override
+    public ShortestPathTree tree(int source) {
+        return new ShortestPathTree(source, distances[source], previous[source]);
+    }
+
+
+    @Override
+    public TreeRouteTable copyFor(RailNetwork network) {
+        return new CompactRouteTable(this);
+    }
+}
@@ -1,73 +1,325 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public class ComputePath {
-    public static Set<String> stations = new HashSet<>();
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
 
-    public static Map<String, List<Edge>> graph = new HashMap<>();
+    private static final boolean DEBUG = Boolean.getBoolean("routeplanner.debug");
 
-    public static Map<String, Map<String, TrainRoute>> shortestPathToEveryNode = new HashMap<>();
+    private static final int DEFAULT_THREADS =
+            Integer.getInteger("routeplanner.threads", Runtime.getRuntime().availableProcessors());
 
-    static void computeAllShortestPath() {
-        for(String node: graph.keySet()) {
-            shortestPathToEveryNode.put(node, djikstra(node));
+    public enum Storage { PATHS, COMPACT, LAZY, CH, ALT, SNAPSHOT }
+
+    private static final Storage DEFAULT_STORAGE =
+            Storage.valueOf(System.getProperty("routeplanner.storage", "PATHS").toUpperCase());
+
+    private static final long LAZY_CACHE_BYTES = Long.getLong("routeplanner.cache.mb", 256) << 20;
+
+    // saved hierarchies and snapshots are named after the network checksum, one file per network
+    private static final String CH_DIR = System.getProperty("routeplanner.ch.dir");
+
+    private static final String SNAPSHOT_DIR = System.getProperty("routeplanner.snapshot.dir");
+
+    private static final int LANDMARKS = Integer.getInteger("routeplanner.landmarks", 16);
+
+    private static final StationQueue.Kind QUEUE_KIND =
+            StationQueue.Kind.valueOf(System.getProperty("routeplanner.queue", "RADIX").toUpperCase());
+
+    /** Routes the stations and edges entered interactively, printing every route with -Drouteplanner.debug. */
+    static Routing computeAllShortestPath(RailNetwork network) {
+        Routing computed = compute(network);
+
+        if (!DEBUG) {
+            return computed;
         }
 
         //for debugging purposes
-        for(Map.Entry<String,List<Edge>> node: graph.entrySet()) {
-            System.out.println(node.getKey()+ ": ");
-            for(Edge edge: node.getValue()) {
-                System.out.println("\t"+edge.getStartStation().getName() + " -> "+edge.getEndStation().getName() + " | journeyTime: "+edge.getJourneyTimeInMinutes());
+        int n = network.size();
+        for (int node = 0; node < n; node++) {
+            System.out.println(network.nameOf(node) + ": ");
+            for (int e = network.firstEdge(node); e < network.endEdge(node); e++) {
+                System.out.println("\t" + network.nameOf(node) + " -> " + network.nameOf(network.target(e)) + " | journeyTime: " + network.weight(e));
             }
         }
 
         //for debugging purposes
-        for(Map.Entry<String, Map<String, TrainRoute>> outerEntry: shortestPathToEveryNode.entrySet()) {
-            System.out.println("Shortest Path of stations from Station "+outerEntry.getKey());
-            for(Map.Entry<String,TrainRoute> entry: outerEntry.getValue().entrySet()) {
-                System.out.print("\t"+entry.getKey() + " ");
-                System.out.println(entry.getValue().getShortestPath());
+        for (int source = 0; source < n; source++) {
+            System.out.println("Shortest Path of stations from Station " + network.nameOf(source));
+            for (int destination = 0; destination < n; destination++) {
+                int[] path = computed.getTable().path(source, destination);
+                if (path != null) {
+                    System.out.print("\t" + network.nameOf(destination) + " ");
+                    System.out.println(computed.pathNames(path));
+                }
+            }
+        }
+        return computed;
+    }
+
+    public static Routing compute(RailNetwork network) {
+        return compute(network, DEFAULT_STORAGE, DEFAULT_THREADS);
+    }
+
+    /** Routes the network on its own, without touching the routing of the interactive stations. */
+    public static Routing compute(RailNetwork network, Storage storage, int threads) {
+        return new Routing(network, buildTable(network, storage, threads, true), storage, threads, null);
+    }
+
+    /** The file a network's hierarchy or snapshot is saved to in the given directory. */
+    static Path savedFile(String directory, RailNetwork network, String extension) {
+        return Paths.get(directory, String.format("%016x.%s", network.checksum(), extension));
+    }
+
+    private static ContractionHierarchy loadOrBuildHierarchy(RailNetwork network, int threads, boolean persist) {
+        if (CH_DIR == null || !persist) {
+            return ContractionHierarchy.build(network, threads);
+        }
+        Path file = savedFile(CH_DIR, network, "ch");
+        try {
+            ContractionHierarchy hierarchy = Files.exists(file) ? ContractionHierarchy.load(file, network) : null;
+            if (hierarchy == null) {
+                hierarchy = ContractionHierarchy.build(network, threads);
+                Files.createDirectories(file.getParent());
+                hierarchy.save(file, network);
+            }
+            return hierarchy;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read or write " + file, e);
+        }
+    }
+
+    /**
+     * Maps the saved tables for this network, or solves every source and saves them first. A
+     * network that is not persisted is solved into an in-memory table with the same lookups.
+     */
+    private static RouteTable loadOrBuildSnapshot(RailNetwork network, int threads, boolean persist) {
+        if (!persist) {
+            CompactRouteTable table = new CompactRouteTable(network.size());
+            forEachSource(network.size(), threads, source -> table.store(djikstra(network, source)));
+            return table;
+        }
+        if (SNAPSHOT_DIR == null) {
+            throw new IllegalStateException("routeplanner.storage=snapshot needs -Drouteplanner.snapshot.dir");
+        }
+        Path file = savedFile(SNAPSHOT_DIR, network, "snapshot");
+        try {
+            RoutingSnapshot snapshot = Files.exists(file) ? RoutingSnapshot.load(file, network) : null;
+            if (snapshot == null) {
+                CompactRouteTable table = new CompactRouteTable(network.size());
+                forEachSource(network.size(), threads, source -> table.store(djikstra(network, source)));
+                Files.createDirectories(file.getParent());
+                RoutingSnapshot.save(file, network, table);
+                snapshot = RoutingSnapshot.load(file, network);
+            }
+            return snapshot;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read or write " + file, e);
+        }
+    }
+
+    /**
+     * {@code persist} is false for networks derived by edge changes, which are rarely asked for
+     * again and would otherwise leave a file behind for every closure.
+     */
+    private static RouteTable buildTable(RailNetwork network, Storage storage, int threads, boolean persist) {
+        int n = network.size();
+        if (storage == Storage.LAZY) {
+            // sources are solved on first use by the planner instead of up front
+            return LazyRouteTable.withMemoryBudget(network, LAZY_CACHE_BYTES);
+        } else if (storage == Storage.CH) {
+            return loadOrBuildHierarchy(network, threads, persist);
+        } else if (storage == Storage.SNAPSHOT) {
+            return loadOrBuildSnapshot(network, threads, persist);
+        } else if (storage == Storage.ALT) {
+            return new LandmarkRouter(network, LANDMARKS);
+        }
+        TreeRouteTable table = storage == Storage.COMPACT ? new CompactRouteTable(n) : new PathRouteTable(n);
+        forEachSource(n, threads, source -> table.store(djikstra(network, source)));
+        return table;
+    }
+
+    private static void forEachSource(int n, int threads, IntConsumer task) {
+        if (threads <= 1) {
+            for (int node = 0; node < n; node++) {
+                task.accept(node);
+            }
+        } else {
+            // every source writes only its own row, so the workers share nothing mutable
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.submit(() -> IntStream.range(0, n).parallel().forEach(task)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Shortest path computation was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Shortest path computation failed", e.getCause());
+            } finally {
+                pool.shutdown();
             }
         }
     }
 
-    private static Map<String,TrainRoute> djikstra(String startStation) {
-        Map<String, Integer> distances = new HashMap<>();
-        Map<String,List<String>> paths = new HashMap<>();
-        PriorityQueue<String> pq = new PriorityQueue<>(Comparator.comparingInt(distances::get));
-
-        for (String station: graph.keySet()) {
-            distances.put(station, Integer.MAX_VALUE);
-        }
-        distances.put(startStation,0);
-
-        List<String> startList = new ArrayList<>();
-        startList.add(startStation);
-        paths.put(startStation, startList);
-
-        pq.offer(startStation);
-
-        while(!pq.isEmpty()) {
-            String currentStation = pq.poll();
-            for(Edge edge: graph.get(currentStation)) {
-                String endStation = edge.getEndStation().getName();
-                int newDistance = distances.get(currentStation) + edge.getJourneyTimeInMinutes();
-                if (newDistance < distances.get(endStation) ){
-                    distances.put(edge.getEndStation().getName(), newDistance);
-                    List<String> newPath = new ArrayList<>(paths.get(currentStation));
-                    newPath.add(endStation);
-                    paths.put(endStation, newPath);
-                    pq.add(endStation);
+    /**
+     * The routing with the edge between the two stations set to the given time, or closed when
+     * it is negative. Tables that keep per-source trees are copied and only the sources the edge
+     * can affect are solved again; other backends are rebuilt in memory, never saved. See {@link Routing#getChanges()}, which
+     * is null when some source had no tree to compare.
+     */
+    static Routing changeEdge(Routing routing, String from, String to, int journeyTimeInMinutes) {
+        RailNetwork network = routing.getNetwork();
+        int a = network.idOf(from);
+        int b = network.idOf(to);
+        if (a == RailNetwork.NO_STATION || b == RailNetwork.NO_STATION) {
+            throw new IllegalArgumentException("Unknown station in edge " + from + " - " + to);
+        }
+        int oldTime = network.edgeTime(a, b);
+        RailNetwork.Builder builder = network.toBuilder();
+        builder.setEdge(from, to, journeyTimeInMinutes);
+        RailNetwork changed = builder.build();
+        int newTime = changed.edgeTime(a, b);
+        if (oldTime == newTime) {
+            return new Routing(network, routing.getTable(), routing.getStorage(), routing.getThreads(), new ArrayList<>());
+        }
+        if (!(routing.getTable() instanceof TreeRouteTable)) {
+            return new Routing(changed, buildTable(changed, routing.getStorage(), routing.getThreads(), false),
+                    routing.getStorage(), routing.getThreads(), null);
+        }
+
+        TreeRouteTable table = ((TreeRouteTable) routing.getTable()).copyFor(changed);
+        List<List<RouteChange>> changesBySource = new ArrayList<>(Collections.nCopies(changed.size(), null));
+        // a lazy table solves the sources it has not cached on the changed network when asked, so it
+        // stays correct, but the pairs from those sources cannot be compared
+        AtomicBoolean uncached = new AtomicBoolean();
+        forEachSource(changed.size(), routing.getThreads(), source -> {
+            ShortestPathTree before = table.tree(source);
+            if (before == null) {
+                uncached.set(true);
+            } else if (isAffected(before, a, b, oldTime, newTime)) {
+                ShortestPathTree after = djikstra(changed, source);
+                table.store(after);
+                changesBySource.set(source, diff(before, after, a, b));
+            }
+        });
+
+        if (uncached.get()) {
+            return new Routing(changed, table, routing.getStorage(), routing.getThreads(), null);
+        }
+
+        // both directions of a pair are reported by the two end rows, keep one of them
+        Set<Long> seen = new HashSet<>();
+        List<RouteChange> changes = new ArrayList<>();
+        for (List<RouteChange> sourceChanges : changesBySource) {
+            if (sourceChanges == null) {
+                continue;
+            }
+            for (RouteChange change : sourceChanges) {
+                if (seen.add(((long) change.getFrom() << 32) | change.getTo())) {
+                    changes.add(change);
                 }
             }
         }
+        return new Routing(changed, table, routing.getStorage(), routing.getThreads(), changes);
+    }
+
+    /**
+     * A longer or closed edge matters only where the tree uses it; a shorter or new edge
+     * matters only where it beats the current distance to one of its ends.
+     */
+    private static boolean isAffected(ShortestPathTree tree, int a, int b, int oldTime, int newTime) {
+        int[] distances = tree.getDistances();
+        int[] previous = tree.getPrevious();
+        if (oldTime >= 0 && (newTime < 0 || newTime > oldTime)) {
+            return previous[b] == a || previous[a] == b;
+        }
+        return improves(distances[a], newTime, distances[b]) || improves(distances[b], newTime, distances[a]);
+    }
+
+    private static boolean improves(int distance, int edgeTime, int current) {
+        return distance != UNREACHABLE && distance + edgeTime < current;
+    }
+
+    private static List<RouteChange> diff(ShortestPathTree before, ShortestPathTree after, int a, int b) {
+        int source = before.getSource();
+        boolean[] usedBefore = routedThrough(before.getPrevious(), a, b);
+        boolean[] usedAfter = routedThrough(after.getPrevious(), a, b);
+        List<RouteChange> changes = new ArrayList<>();
+        for (int destination = 0; destination < usedBefore.length; destination++) {
+            int oldTime = before.getDistances()[destination];
+            int newTime = after.getDistances()[destination];
+            if (oldTime != newTime || usedBefore[destination] || usedAfter[destination]) {
+                changes.add(source < destination
+                        ? new RouteChange(source, destination, oldTime, newTime)
+                        : new RouteChange(destination, source, oldTime, newTime));
+            }
+        }
+        return changes;
+    }
+
+    /** Marks the stations whose tree path crosses the edge a - b. */
+    private static boolean[] routedThrough(int[] previous, int a, int b) {
+        int n = previous.length;
+        boolean[] through = new boolean[n];
+        byte[] state = new byte[n]; // 0 unknown, 1 known
+        int[] chain = new int[n];
+        for (int station = 0; station < n; station++) {
+            int length = 0;
+            int current = station;
+            while (current != RailNetwork.NO_STATION && state[current] == 0) {
+                chain[length++] = current;
+                current = previous[current];
+            }
+            boolean crossed = current != RailNetwork.NO_STATION && through[current];
+            for (int i = length - 1; i >= 0; i--) {
+                int hop = chain[i];
+                int parent = previous[hop];
+                crossed |= (hop == a && parent == b) || (hop == b && parent == a);
+                through[hop] = crossed;
+                state[hop] = 1;
+            }
+        }
+        return through;
+    }
+
+    static ShortestPathTree djikstra(RailNetwork network, int startStation) {
+        return djikstra(network, startStation, QUEUE_KIND.create());
+    }
 
-        Map<String, TrainRoute> trainRoutes = new HashMap<>();
-        for(String destination: distances.keySet()) {
-            if(paths.containsKey(destination)) {
-                trainRoutes.put(destination, new TrainRoute(distances.get(destination),paths.get(destination)));
+    static ShortestPathTree djikstra(RailNetwork network, int startStation, StationQueue queue) {
+        int n = network.size();
+        int[] distances = new int[n];
+        int[] previous = new int[n];
+        Arrays.fill(distances, UNREACHABLE);
+        Arrays.fill(previous, RailNetwork.NO_STATION);
+        distances[startStation] = 0;
+
+        queue.reset(n, network.maxWeight());
+        queue.insertOrDecrease(startStation, 0);
+
+        int currentStation;
+        while ((currentStation = queue.poll()) != RailNetwork.NO_STATION) {
+            int currentDistance = distances[currentStation];
+            for (int e = network.firstEdge(currentStation); e < network.endEdge(currentStation); e++) {
+                int endStation = network.target(e);
+                int newDistance = currentDistance + network.weight(e);
+                if (newDistance < distances[endStation]) {
+                    distances[endStation] = newDistance;
+                    previous[endStation] = currentStation;
+                    queue.insertOrDecrease(endStation, newDistance);
+                }
             }
         }
-        return trainRoutes;
+
+        return new ShortestPathTree(startStation, distances, previous);
     }
 
 }
@@ -0,0 +1,568 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Contraction hierarchy over the (undirected) rail network. Stations are contracted
+ * in rounds of independent sets, so shortcut discovery runs in parallel; queries are
+ * a bidirectional search over upward arcs and only touch a few hundred stations.
+ */
+public class ContractionHierarchy implements RouteTable {
+    private static final int FILE_MAGIC = 0x52434831; // "RCH1"
+    // version 2 stores the network itself, so a checksum collision cannot pass for a match
+    private static final int FILE_VERSION = 2;
+    private static final int WITNESS_SETTLE_LIMIT = 50;
+    private static final int NO_MIDDLE = -1;
+
+    private final long networkChecksum;
+    private final int[] ranks;
+
+    // upward arcs in CSR form: arcs of v lead to stations of higher rank
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] middles;
+
+    private final Map<Integer, Double> averageTimes = new ConcurrentHashMap<>();
+    private final ThreadLocal<Search> searches;
+
+    private ContractionHierarchy(long networkChecksum, int[] ranks, int[] offsets, int[] targets,
+                                 int[] weights, int[] middles) {
+        this.networkChecksum = networkChecksum;
+        this.ranks = ranks;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.middles = middles;
+        this.searches = ThreadLocal.withInitial(() -> new Search(ranks.length));
+    }
+
+    @Override
+    public int time(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        Search search = searches.get();
+        search.run(from, to);
+        return search.best;
+    }
+
+    @Override
+    public int[] path(int from, int to) {
+        TrainRoute route = route(from, to);
+        return route == null ? null : route.getShortestPath();
+    }
+
+    @Override
+    public TrainRoute route(int from, int to) {
+        if (from == to) {
+            return new TrainRoute(0, new int[]{from});
+        }
+        Search search = searches.get();
+        search.run(from, to);
+        if (search.best == ComputePath.UNREACHABLE) {
+            return null;
+        }
+
+        List<Integer> upward = new ArrayList<>();
+        for (int station = search.meeting; station != RailNetwork.NO_STATION; station = search.forward.parent(station)) {
+            upward.add(station);
+        }
+        Collections.reverse(upward);
+
+        List<Integer> path = new ArrayList<>();
+        path.add(from);
+        for (int i = 1; i < upward.size(); i++) {
+            unpack(upward.get(i - 1), upward.get(i), path);
+        }
+        int previous = search.meeting;
+        for (int station = search.backward.parent(previous); station != RailNetwork.NO_STATION;
+             station = search.backward.parent(station)) {
+            unpack(previous, station, path);
+            previous = station;
+        }
+        return new TrainRoute(search.best, path.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /** One-to-all distances by an upward search followed by a downward sweep in rank order (PHAST). */
+    @Override
+    public double averageTime(int from) {
+        return averageTimes.computeIfAbsent(from, source -> {
+            int n = ranks.length;
+            int[] distances = new int[n];
+            Arrays.fill(distances, ComputePath.UNREACHABLE);
+            Search search = searches.get();
+            search.forward.run(source, null);
+            for (int station : search.forward.touched()) {
+                distances[station] = search.forward.distance(station);
+            }
+
+            int[] byRank = new int[n];
+            for (int station = 0; station < n; station++) {
+                byRank[ranks[station]] = station;
+            }
+            for (int r = n - 1; r >= 0; r--) {
+                int station = byRank[r];
+                for (int arc = offsets[station]; arc < offsets[station + 1]; arc++) {
+                    int above = distances[targets[arc]];
+                    if (above != ComputePath.UNREACHABLE && above + weights[arc] < distances[station]) {
+                        distances[station] = above + weights[arc];
+                    }
+                }
+            }
+            return new ShortestPathTree(source, distances, null).averageTime();
+        });
+    }
+
+    public int shortcutCount() {
+        int shortcuts = 0;
+        for (int middle : middles) {
+            if (middle != NO_MIDDLE) {
+                shortcuts++;
+            }
+        }
+        return shortcuts;
+    }
+
+    private void unpack(int from, int to, List<Integer> path) {
+        int lower = ranks[from] < ranks[to] ? from : to;
+        int upper = lower == from ? to : from;
+        int middle = NO_MIDDLE;
+        for (int arc = offsets[lower]; arc < offsets[lower + 1]; arc++) {
+            if (targets[arc] == upper) {
+                middle = middles[arc];
+                break;
+            }
+        }
+        if (middle == NO_MIDDLE) {
+            path.add(to);
+        } else {
+            unpack(from, middle, path);
+            unpack(middle, to, path);
+        }
+    }
+
+    public static ContractionHierarchy build(RailNetwork network, int threads) {
+        return new Contractor(network).contract(threads);
+    }
+
+    /**
+     * Writes the hierarchy with the network it was built for, under a temporary name of its own that
+     * is then moved into place, like {@link RoutingSnapshot#save}.
+     */
+    public void save(Path file, RailNetwork network) throws IOException {
+        if (network.checksum() != networkChecksum) {
+            throw new IllegalArgumentException("The hierarchy was built for another network");
+        }
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(networkChecksum);
+            writeNetwork(out, network);
+            writeArray(out, ranks);
+            writeArray(out, offsets);
+            writeArray(out, targets);
+            writeArray(out, weights);
+            writeArray(out, middles);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Loads a saved hierarchy, or returns null if the file was built for a different network or by
+     * another version.
+     */
+    public static ContractionHierarchy load(Path file, RailNetwork network) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a contraction hierarchy file: " + file);
+            }
+            if (in.readInt() != FILE_VERSION || in.readLong() != network.checksum()
+                    || !readNetwork(in).hasSameLayout(network)) {
+                return null;
+            }
+            return new ContractionHierarchy(network.checksum(), readArray(in), readArray(in), readArray(in),
+                    readArray(in), readArray(in));
+        }
+    }
+
+    private static void writeNetwork(DataOutputStream out, RailNetwork network) throws IOException {
+        int n = network.size();
+        out.writeInt(n);
+        for (int station = 0; station < n; station++) {
+            out.writeUTF(network.nameOf(station));
+        }
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[network.edgeCount()];
+        int[] weights = new int[network.edgeCount()];
+        for (int station = 0; station <= n; station++) {
+            offsets[station] = station < n ? network.firstEdge(station) : network.edgeCount();
+        }
+        for (int edge = 0; edge < targets.length; edge++) {
+            targets[edge] = network.target(edge);
+            weights[edge] = network.weight(edge);
+        }
+        writeArray(out, offsets);
+        writeArray(out, targets);
+        writeArray(out, weights);
+    }
+
+    private static RailNetwork readNetwork(DataInputStream in) throws IOException {
+        String[] names = new String[in.readInt()];
+        for (int station = 0; station < names.length; station++) {
+            names[station] = in.readUTF();
+        }
+        return RailNetwork.of(names, readArray(in), readArray(in), readArray(in));
+    }
+
+    private static void writeArray(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readArray(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /** Bidirectional upward search; both directions use the same arcs since the network is undirected. */
+    private class Search {
+        final UpwardSearch forward;
+        final UpwardSearch backward;
+        int best;
+        int meeting;
+
+        Search(int stations) {
+            forward = new UpwardSearch(stations);
+            backward = new UpwardSearch(stations);
+        }
+
+        void run(int from, int to) {
+            best = ComputePath.UNREACHABLE;
+            meeting = RailNetwork.NO_STATION;
+            forward.run(from, null);
+            backward.run(to, this);
+        }
+    }
+
+    private class UpwardSearch {
+        private final int[] distances;
+        private final int[] parents;
+        private final List<Integer> touched = new ArrayList<>();
+        private final PriorityQueue<Long> queue = new PriorityQueue<>();
+
+        UpwardSearch(int stations) {
+            distances = new int[stations];
+            parents = new int[stations];
+            Arrays.fill(distances, ComputePath.UNREACHABLE);
+        }
+
+        /**
+         * Settles the upward search space of {@code source}. When {@code meet} is given this is the
+         * backward half of a query: it records meeting points with the finished forward search and
+         * stops once nothing left in the queue can improve on the best one.
+         */
+        void run(int source, Search meet) {
+            for (int station : touched) {
+                distances[station] = ComputePath.UNREACHABLE;
+            }
+            touched.clear();
+            queue.clear();
+
+            distances[source] = 0;
+            parents[source] = RailNetwork.NO_STATION;
+            touched.add(source);
+            queue.add((long) source);
+            while (!queue.isEmpty()) {
+                long entry = queue.poll();
+                int station = (int) entry;
+                int distance = (int) (entry >>> 32);
+                if (distance > distances[station]) {
+                    continue;
+                }
+                if (meet != null) {
+                    if (distance >= meet.best) {
+                        break;
+                    }
+                    int there = meet.forward.distance(station);
+                    if (there != ComputePath.UNREACHABLE && there + distance < meet.best) {
+                        meet.best = there + distance;
+                        meet.meeting = station;
+                    }
+                }
+                if (isStalled(station, distance)) {
+                    continue;
+                }
+                for (int arc = offsets[station]; arc < offsets[station + 1]; arc++) {
+                    int target = targets[arc];
+                    int candidate = distance + weights[arc];
+                    if (candidate < distances[target]) {
+                        if (distances[target] == ComputePath.UNREACHABLE) {
+                            touched.add(target);
+                        }
+                        distances[target] = candidate;
+                        parents[target] = station;
+                        queue.add(((long) candidate << 32) | target);
+                    }
+                }
+            }
+        }
+
+        /** Stall-on-demand: a higher station already reached more cheaply proves this one is not on a shortest path. */
+        private boolean isStalled(int station, int distance) {
+            for (int arc = offsets[station]; arc < offsets[station + 1]; arc++) {
+                int above = distances[targets[arc]];
+                if (above != ComputePath.UNREACHABLE && above + weights[arc] < distance) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int distance(int station) {
+            return distances[station];
+        }
+
+        int parent(int station) {
+            return parents[station];
+        }
+
+        List<Integer> touched() {
+            return touched;
+        }
+    }
+
+    /** Preprocessing state: the remaining graph with its shortcuts, shrinking as stations are contracted. */
+    private static class Contractor {
+        private final int n;
+        private final List<Map<Integer, int[]>> arcs = new ArrayList<>(); // neighbour -> {weight, middle}
+        private final int[] ranks;
+        private final int[] priorities;
+        private final int[] contractedNeighbours;
+        private final int[] levels;
+        private final boolean[] contracted;
+        private final boolean[] inRound;
+        private final List<List<int[]>> upward = new ArrayList<>(); // {target, weight, middle}
+        private final long networkChecksum;
+        private final ThreadLocal<WitnessSearch> witnessSearches = ThreadLocal.withInitial(WitnessSearch::new);
+
+        Contractor(RailNetwork network) {
+            n = network.size();
+            ranks = new int[n];
+            priorities = new int[n];
+            contractedNeighbours = new int[n];
+            levels = new int[n];
+            contracted = new boolean[n];
+            inRound = new boolean[n];
+            networkChecksum = network.checksum();
+            for (int station = 0; station < n; station++) {
+                arcs.add(new HashMap<>());
+                upward.add(new ArrayList<>());
+            }
+            for (int station = 0; station < n; station++) {
+                for (int e = network.firstEdge(station); e < network.endEdge(station); e++) {
+                    if (network.target(e) != station) {
+                        addArc(station, network.target(e), network.weight(e), NO_MIDDLE);
+                    }
+                }
+            }
+        }
+
+        ContractionHierarchy contract(int threads) {
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+            try {
+                List<Integer> remaining = new ArrayList<>();
+                for (int station = 0; station < n; station++) {
+                    remaining.add(station);
+                }
+                Set<Integer> dirty = new HashSet<>(remaining);
+                int nextRank = 0;
+
+                while (!remaining.isEmpty()) {
+                    List<Integer> toUpdate = new ArrayList<>(dirty);
+                    pool.submit(() -> toUpdate.parallelStream().forEach(this::updatePriority)).get();
+                    dirty.clear();
+
+                    List<Integer> round = new ArrayList<>();
+                    for (int station : remaining) {
+                        if (isLocalMinimum(station)) {
+                            round.add(station);
+                            inRound[station] = true;
+                        }
+                    }
+
+                    // shortcuts for an independent set can be found concurrently as long as
+                    // witness searches avoid every station contracted in the same round
+                    List<List<int[]>> shortcuts = pool.submit(() -> round.parallelStream()
+                            .map(this::findShortcuts)
+                            .collect(java.util.stream.Collectors.toList())).get();
+
+                    for (int i = 0; i < round.size(); i++) {
+                        int station = round.get(i);
+                        ranks[station] = nextRank++;
+                        for (Map.Entry<Integer, int[]> arc : arcs.get(station).entrySet()) {
+                            int neighbour = arc.getKey();
+                            upward.get(station).add(new int[]{neighbour, arc.getValue()[0], arc.getValue()[1]});
+                            arcs.get(neighbour).remove(station);
+                            contractedNeighbours[neighbour]++;
+                            levels[neighbour] = Math.max(levels[neighbour], levels[station] + 1);
+                            dirty.add(neighbour);
+                        }
+                        arcs.get(station).clear();
+                        for (int[] shortcut : shortcuts.get(i)) {
+                            addArc(shortcut[0], shortcut[1], shortcut[2], station);
+                            addArc(shortcut[1], shortcut[0], shortcut[2], station);
+                        }
+                        contracted[station] = true;
+                        inRound[station] = false;
+                    }
+                    remaining.removeIf(station -> contracted[station]);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Contraction was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Contraction failed", e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+            return toHierarchy();
+        }
+
+        private void addArc(int from, int to, int weight, int middle) {
+            int[] existing = arcs.get(from).get(to);
+            if (existing == null || weight < existing[0]) {
+                arcs.get(from).put(to, new int[]{weight, middle});
+            }
+        }
+
+        private boolean isLocalMinimum(int station) {
+            for (int neighbour : arcs.get(station).keySet()) {
+                if (priorities[neighbour] < priorities[station]
+                        || (priorities[neighbour] == priorities[station] && neighbour < station)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void updatePriority(int station) {
+            int edgeDifference = findShortcuts(station).size() - arcs.get(station).size();
+            priorities[station] = 2 * edgeDifference + contractedNeighbours[station] + levels[station];
+        }
+
+        /** Shortcuts {from, to, weight} needed between the neighbours of {@code station} if it were removed. */
+        private List<int[]> findShortcuts(int station) {
+            List<int[]> shortcuts = new ArrayList<>();
+            Map<Integer, int[]> neighbours = arcs.get(station);
+            int maxOut = 0;
+            for (int[] arc : neighbours.values()) {
+                maxOut = Math.max(maxOut, arc[0]);
+            }
+            WitnessSearch witness = witnessSearches.get();
+            for (Map.Entry<Integer, int[]> in : neighbours.entrySet()) {
+                int from = in.getKey();
+                witness.run(from, station, in.getValue()[0] + maxOut);
+                for (Map.Entry<Integer, int[]> out : neighbours.entrySet()) {
+                    int to = out.getKey();
+                    if (to <= from) {
+                        continue;
+                    }
+                    int viaStation = in.getValue()[0] + out.getValue()[0];
+                    if (witness.distances[to] > viaStation) {
+                        shortcuts.add(new int[]{from, to, viaStation});
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /** Settle-limited local Dijkstra that avoids the station being contracted and its round. */
+        private class WitnessSearch {
+            private final int[] distances = new int[n];
+            private final List<Integer> touched = new ArrayList<>();
+            private final PriorityQueue<Long> queue = new PriorityQueue<>();
+
+            WitnessSearch() {
+                Arrays.fill(distances, ComputePath.UNREACHABLE);
+            }
+
+            void run(int source, int excluded, int limit) {
+                for (int station : touched) {
+                    distances[station] = ComputePath.UNREACHABLE;
+                }
+                touched.clear();
+                queue.clear();
+
+                distances[source] = 0;
+                touched.add(source);
+                queue.add((long) source);
+                int settled = 0;
+                while (!queue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                    long entry = queue.poll();
+                    int station = (int) entry;
+                    int distance = (int) (entry >>> 32);
+                    if (distance > limit) {
+                        break;
+                    }
+                    if (distance > distances[station]) {
+                        continue;
+                    }
+                    settled++;
+                    for (Map.Entry<Integer, int[]> arc : arcs.get(station).entrySet()) {
+                        int target = arc.getKey();
+                        if (target == excluded || inRound[target]) {
+                            continue;
+                        }
+                        int candidate = distance + arc.getValue()[0];
+                        if (candidate < distances[target]) {
+                            if (distances[target] == ComputePath.UNREACHABLE) {
+                                touched.add(target);
+                            }
+                            distances[target] = candidate;
+                            queue.add(((long) candidate << 32) | target);
+                        }
+                    }
+                }
+            }
+        }
+
+        private ContractionHierarchy toHierarchy() {
+            int[] offsets = new int[n + 1];
+            for (int station = 0; station < n; station++) {
+                offsets[station + 1] = offsets[station] + upward.get(station).size();
+            }
+            int[] targets = new int[offsets[n]];
+            int[] weights = new int[offsets[n]];
+            int[] middles = new int[offsets[n]];
+            for (int station = 0; station < n; station++) {
+                int arc = offsets[station];
+                for (int[] up : upward.get(station)) {
+                    targets[arc] = up[0];
+                    weights[arc] = up[1];
+                    middles[arc] = up[2];
+                    arc++;
+                }
+            }
+            return new ContractionHierarchy(networkChecksum, ranks, offsets, targets, weights, middles);
+        }
+    }
+}
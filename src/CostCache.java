@@ -0,0 +1,85 @@
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Bounded LRU of route costs keyed by train and a fingerprint of the package bundle it
+ * would carry, so a (train, bundle) pair that comes up again in a later auction round is
+ * not simulated twice.
+ */
+public class CostCache {
+    private final int capacity;
+    private final Map<BundleKey, Double> costs;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CostCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.costs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BundleKey, Double> eldest) {
+                if (size() > CostCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public double get(Train train, long fingerprint, int bundleSize, DoubleSupplier cost) {
+        BundleKey key = new BundleKey(train, fingerprint, bundleSize);
+        Double cached;
+        synchronized (this) {
+            cached = costs.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        // evaluated outside the lock so parallel bids do not queue behind one simulation
+        double value = cost.getAsDouble();
+        synchronized (this) {
+            costs.put(key, value);
+        }
+        return value;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CostCache{hits=%d, misses=%d, evictions=%d, hitRate=%.1f%%}",
+                getHits(), getMisses(), getEvictions(), 100 * getHitRate());
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class BundleKey {
+        private final Train train;
+        private final long fingerprint;
+        private final int size;
+    }
+}
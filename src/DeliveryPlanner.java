@@ -1,43 +1,131 @@
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
 
 public class DeliveryPlanner {
 
     private static final double FUTURE_COST_WEIGHT = 0.3;
     private static final double UTILIZATION_BONUS = 0.2;
     private static final int MAX_AUCTION_ROUNDS = 50;
+    private static final int AUCTION_THREADS =
+            Integer.getInteger("routeplanner.auction.threads", Runtime.getRuntime().availableProcessors());
+    // below this many trains a package's bids are cheaper to evaluate than to fork
+    private static final int MIN_TRAINS_FOR_PARALLEL_BIDS = 8;
+    // bids per package come from this many nearest trains with room for it; 0, the default, asks the
+    // whole fleet, since pruning trades makespan for speed on large fleets
+    private static final int CANDIDATE_TRAINS = Integer.getInteger("routeplanner.auction.candidates", 0);
+    private static final int COST_CACHE_SIZE = Integer.getInteger("routeplanner.cost.cache", 100_000);
+    private static final boolean STATS = Boolean.getBoolean("routeplanner.stats");
+    private static final String MOVES_FILE = System.getProperty("routeplanner.moves.file");
+    private static final int OUTPUT_BUFFER_BYTES = 1 << 16;
+    private static final long SEARCH_MILLIS = Long.getLong("routeplanner.search.ms", 200);
+    private static final boolean PORTFOLIO = Boolean.getBoolean("routeplanner.portfolio");
+    private static final int PORTFOLIO_THREADS =
+            Integer.getInteger("routeplanner.portfolio.threads", Runtime.getRuntime().availableProcessors());
+    private static final long PORTFOLIO_MILLIS = Long.getLong("routeplanner.portfolio.ms", 2_000);
+    // instances up to this size are solved exactly after the heuristics
+    private static final int EXACT_MAX_PACKAGES = Integer.getInteger("routeplanner.exact.packages", 10);
+    private static final int EXACT_MAX_TRAINS = Integer.getInteger("routeplanner.exact.trains", 6);
+    private static final int EXACT_THREADS =
+            Integer.getInteger("routeplanner.exact.threads", Runtime.getRuntime().availableProcessors());
+
+    public static void assignPackage(Routing routing, List<Train> trains, List<Package> packages) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER_BYTES);
+        assignPackage(new PlanningContext(routing, trains, packages), out);
+    }
 
-    public static void assignPackage(List<Train> trains, List<Package> packages) {
-        for (Train train : trains) {
-            if (train.getLog() == null) {
-                train.setLog(new ArrayList<>());
+    /**
+     * Plans the run, executes the plan on its trains and writes the moves and summary to
+     * {@code out}, which should buffer and is flushed at the end but not closed.
+     */
+    public static void assignPackage(PlanningContext context, Writer out) {
+        List<Train> trains = context.getTrains();
+        List<Package> packages = context.getPackages();
+        MakespanBound bound = MakespanBound.of(new RoutePlan(context));
+        // statistics go through the same writer as the plan, ahead of it
+        RailNetwork network = context.getRouting().getNetwork();
+        TextMoveLog text = new TextMoveLog(out, network, t -> trains.get(t).getName(), p -> packages.get(p).getName());
+        AssignmentIndex assignments;
+        RoutePlan plan;
+        if (PORTFOLIO) {
+            PortfolioSolver portfolio = PortfolioSolver.solve(context, PORTFOLIO_THREADS, PORTFOLIO_MILLIS);
+            if (STATS) {
+                text.println(portfolio.toString());
             }
+            plan = portfolio.getPlan();
+            assignments = assignmentsOf(plan);
+        } else {
+            assignments = runAuctionAlgorithm(context, AuctionWeights.DEFAULT, MAX_AUCTION_ROUNDS, STATS ? text : null);
+            plan = RoutePlan.fromAssignments(context, assignments);
         }
 
-        Map<Package, Train> assignments = runAuctionAlgorithm(trains, packages);
-
-
-        Map<Train, List<Package>> trainPackages = new HashMap<>();
-        for (Train train : trains) {
-            trainPackages.put(train, new ArrayList<>());
+        if (!PORTFOLIO && SEARCH_MILLIS > 0) {
+            long auctionMakespan = plan.makespan();
+            RoutePlan searched = plan;
+            LocalSearch search = LocalSearch.improve(plan, SEARCH_MILLIS, () -> bound.isReachedBy(searched));
+            if (STATS) {
+                text.println("Auction makespan: " + auctionMakespan + ", " + search);
+            }
+            assignments = assignmentsOf(plan);
         }
 
-        for (Map.Entry<Package, Train> entry : assignments.entrySet()) {
-            trainPackages.get(entry.getValue()).add(entry.getKey());
+        if (packages.size() <= EXACT_MAX_PACKAGES && trains.size() <= EXACT_MAX_TRAINS && !bound.isReachedBy(plan)) {
+            long heuristicMakespan = plan.makespan();
+            plan = ExactSolver.solve(plan, EXACT_THREADS);
+            if (STATS) {
+                text.println("Exact makespan: " + plan.makespan() + " (heuristic " + heuristicMakespan + ")");
+            }
+            assignments = assignmentsOf(plan);
         }
 
-        for (Train train : trains) {
-            List<Package> assignedPackages = trainPackages.get(train);
-            if (!assignedPackages.isEmpty()) {
-                executeOptimizedRoute(train, assignedPackages);
+        // moves are written as the routes are executed, through one buffer instead of a println per line
+        BinaryMoveLog binary = MOVES_FILE == null ? null :
+                BinaryMoveLog.open(Path.of(MOVES_FILE), network, trains, packages);
+        try {
+            printResults(trains, assignments, plan, bound, text, binary == null ? text : MoveLog.both(text, binary));
+        } finally {
+            text.flush();
+            if (binary != null) {
+                binary.close();
             }
         }
+    }
+
+    /** The auction's assignment with the given bid weights, as the greedy plan it would be executed with. */
+    static RoutePlan auctionPlan(PlanningContext context, AuctionWeights weights) {
+        return auctionPlan(context, weights, AUCTION_THREADS, () -> false);
+    }
 
-        printResults(trains, assignments);
+    /** As {@link #auctionPlan(PlanningContext, AuctionWeights)}, cut short when {@code stop} turns true. */
+    static RoutePlan auctionPlan(PlanningContext context, AuctionWeights weights, int threads, BooleanSupplier stop) {
+        return RoutePlan.fromAssignments(context,
+                runAuctionAlgorithm(context, weights, MAX_AUCTION_ROUNDS, threads, stop, null));
     }
 
-    private static Map<Package, Train> runAuctionAlgorithm(List<Train> trains, List<Package> packages) {
-        Map<Package, Train> assignments = new HashMap<>();
+    /**
+     * The assignment after at most {@code maxRounds} rounds of bids; one round asks for a bid on every package.
+     * The rounds taken and the cost cache use are written to {@code stats} unless it is null.
+     */
+    static AssignmentIndex runAuctionAlgorithm(PlanningContext context, AuctionWeights weights, int maxRounds,
+                                               TextMoveLog stats) {
+        return runAuctionAlgorithm(context, weights, maxRounds, AUCTION_THREADS, () -> false, stats);
+    }
+
+    /**
+     * Bids are collected on up to {@code threads} threads. {@code stop} is asked before every bid; once
+     * it is true the auction ends with the assignment it has so far, which may leave packages out.
+     */
+    static AssignmentIndex runAuctionAlgorithm(PlanningContext context, AuctionWeights weights, int maxRounds,
+                                               int threads, BooleanSupplier stop, TextMoveLog stats) {
+        List<Train> trains = context.getTrains();
+        List<Package> packages = context.getPackages();
+        AssignmentIndex assignments = new AssignmentIndex();
         Map<Package, Double> packagePrices = new HashMap<>();
 
         for (Package pkg : packages) {
@@ -46,48 +134,115 @@ public class DeliveryPlanner {
 
         int round = 0;
         boolean improved = true;
+        ForkJoinPool pool = threads > 1 && trains.size() >= MIN_TRAINS_FOR_PARALLEL_BIDS ?
+                new ForkJoinPool(threads) : null;
+        // train positions are fixed during the auction, so a cached cost stays valid for the whole run
+        CostCache costCache = new CostCache(COST_CACHE_SIZE);
+        NearestTrainIndex candidates = CANDIDATE_TRAINS > 0 && trains.size() > CANDIDATE_TRAINS ?
+                new NearestTrainIndex(context.getRouting(), trains) : null;
+
+        try {
+            while (improved && round < maxRounds && !stop.getAsBoolean()) {
+                improved = runAuctionRound(context, assignments, packagePrices, weights, costCache,
+                        candidates, pool, stop);
+                round++;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        if (stats != null) {
+            stats.println("Auction rounds: " + round + ", " + costCache);
+        }
 
-        while (improved && round < MAX_AUCTION_ROUNDS) {
-            improved = false;
+        return assignments;
+    }
 
-            for (Package pkg : packages) {
-                AuctionResult result = conductPackageAuction(pkg, trains, assignments, packagePrices);
+    private static boolean runAuctionRound(PlanningContext context, AssignmentIndex assignments, Map<Package, Double> packagePrices,
+                                           AuctionWeights weights, CostCache costCache,
+                                           NearestTrainIndex candidates, ForkJoinPool pool, BooleanSupplier stop) {
+        boolean improved = false;
 
-                if (result.bestTrain != null) {
-                    Train currentAssignment = assignments.get(pkg);
+        for (Package pkg : context.getPackages()) {
+            if (stop.getAsBoolean()) {
+                return false;
+            }
+            AuctionResult result = conductPackageAuction(pkg, context, assignments, packagePrices, weights, costCache,
+                    candidates, pool);
 
-                    if (currentAssignment != result.bestTrain) {
-                        if (currentAssignment != null) {
+            if (result.bestTrain != null) {
+                Train currentAssignment = assignments.trainOf(pkg);
 
-                        }
-                        assignments.put(pkg, result.bestTrain);
-                        packagePrices.put(pkg, result.winningBid);
+                if (currentAssignment != result.bestTrain) {
+                    assignments.assign(pkg, result.bestTrain);
+                    packagePrices.put(pkg, result.winningBid);
 
-                        improved = true;
-                    }
+                    improved = true;
                 }
             }
-
-            round++;
         }
 
-        return assignments;
+        return improved;
+    }
+
+    private static AuctionResult conductPackageAuction(Package pkg, PlanningContext context,
+                                                       AssignmentIndex currentAssignments,
+                                                       Map<Package, Double> packagePrices, AuctionWeights weights,
+                                                       CostCache costCache, NearestTrainIndex candidates,
+                                                       ForkJoinPool pool) {
+        List<Train> trains = context.getTrains();
+        if (candidates != null) {
+            int[] bidders = candidates.nearest(context.stationOf(pkg.getStartingNode()), CANDIDATE_TRAINS,
+                    t -> canTrainHandlePackage(trains.get(t), pkg, currentAssignments));
+            AuctionResult result = collectBids(pkg, context, bidders, currentAssignments, packagePrices, weights,
+                    costCache, pool);
+            if (result.bestTrain != null) {
+                return result;
+            }
+            // none of the nearby trains can take it, so ask the whole fleet
+        }
+        return collectBids(pkg, context, IntStream.range(0, trains.size()).toArray(), currentAssignments,
+                packagePrices, weights, costCache, pool);
     }
 
-    private static AuctionResult conductPackageAuction(Package pkg, List<Train> trains,
-                                                       Map<Package, Train> currentAssignments,
-                                                       Map<Package, Double> packagePrices) {
+    private static AuctionResult collectBids(Package pkg, PlanningContext context, int[] bidders,
+                                             AssignmentIndex currentAssignments,
+                                             Map<Package, Double> packagePrices, AuctionWeights weights,
+                                             CostCache costCache, ForkJoinPool pool) {
+        List<Train> trains = context.getTrains();
+        double[] costs = new double[bidders.length];
+        if (pool == null) {
+            for (int i = 0; i < costs.length; i++) {
+                costs[i] = bid(context, trains.get(bidders[i]), pkg, currentAssignments, weights, costCache);
+            }
+        } else {
+            // bids only read the auction state; the winner is still picked in train order below,
+            // so the result does not depend on the thread count
+            try {
+                pool.submit(() -> IntStream.range(0, costs.length).parallel()
+                        .forEach(i -> costs[i] = bid(context, trains.get(bidders[i]), pkg, currentAssignments, weights,
+                                costCache))).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Auction was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Auction bid failed", e.getCause());
+            }
+        }
+
         double bestCost = Double.MAX_VALUE;
         double secondBestCost = Double.MAX_VALUE;
         Train bestTrain = null;
 
-        for (Train train : trains) {
-            if (!canTrainHandlePackage(train, pkg, currentAssignments)) {
+        for (int i = 0; i < costs.length; i++) {
+            Train train = trains.get(bidders[i]);
+            double totalCost = costs[i];
+            if (Double.isNaN(totalCost)) {
                 continue;
             }
 
-            double totalCost = calculateTrainCostForPackage(train, pkg, currentAssignments, packagePrices);
-
             if (totalCost < bestCost) {
                 secondBestCost = bestCost;
                 bestCost = totalCost;
@@ -104,361 +259,163 @@ public class DeliveryPlanner {
         return new AuctionResult(bestTrain, winningBid);
     }
 
-    private static boolean canTrainHandlePackage(Train train, Package pkg, Map<Package, Train> assignments) {
-        int currentLoad = train.getCurrentLoad();
-        for (Map.Entry<Package, Train> entry : assignments.entrySet()) {
-            if (entry.getValue() == train) {
-                currentLoad += entry.getKey().getWeightInKg();
-            }
+    /** The train's cost for taking the package, or NaN if it cannot carry it. */
+    private static double bid(PlanningContext context, Train train, Package pkg, AssignmentIndex assignments,
+                              AuctionWeights weights, CostCache costCache) {
+        if (!canTrainHandlePackage(train, pkg, assignments)) {
+            return Double.NaN;
         }
-
-        return currentLoad + pkg.getWeightInKg() <= train.getCapacityInKg();
+        Collection<Package> bundle = assignments.packagesOf(train);
+        long fingerprint = assignments.fingerprint(train) + assignments.packageHash(pkg);
+        return costCache.get(train, fingerprint, bundle.size() + 1,
+                () -> calculateTrainCostForPackage(context, train, pkg, assignments, weights));
     }
 
-    private static double calculateTrainCostForPackage(Train train, Package pkg,
-                                                       Map<Package, Train> assignments,
-                                                       Map<Package, Double> packagePrices) {
-        List<Package> trainPackages = assignments.entrySet().stream()
-                .filter(entry -> entry.getValue() == train)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-
-        List<Package> allPackages = new ArrayList<>(trainPackages);
-        allPackages.add(pkg);
+    private static boolean canTrainHandlePackage(Train train, Package pkg, AssignmentIndex assignments) {
+        int currentLoad = train.getCurrentLoad() + assignments.assignedLoad(train);
 
-        double immediateCost = calculateOptimalDeliveryTime(train, allPackages);
-        double futureCost = calculateFuturePositioningCost(train, allPackages);
-        double utilizationBonus = calculateUtilizationBonus(train, allPackages);
-
-        return immediateCost + FUTURE_COST_WEIGHT * futureCost - UTILIZATION_BONUS * utilizationBonus;
+        return currentLoad + pkg.getWeightInKg() <= train.getCapacityInKg();
     }
 
-    private static double calculateOptimalDeliveryTime(Train train, List<Package> packages) {
-        if (packages.isEmpty()) return 0;
-
-        Map<String, List<Package>> pickupGroups = packages.stream()
-                .collect(Collectors.groupingBy(p -> p.getStartingNode().getName()));
-
-        String currentLocation = train.getCurrentStation();
-        int currentTime = train.getCurrentTime();
-        double totalTime = 0;
-
-        Set<String> visitedPickups = new HashSet<>();
-
-        while (visitedPickups.size() < pickupGroups.size()) {
-            String nearestPickup = null;
-            int shortestTime = Integer.MAX_VALUE;
-
-            for (String pickup : pickupGroups.keySet()) {
-                if (visitedPickups.contains(pickup)) continue;
-
-                TrainRoute route = ComputePath.shortestPathToEveryNode
-                        .get(currentLocation)
-                        .get(pickup);
-
-                if (route != null && route.getTime() < shortestTime) {
-                    shortestTime = route.getTime();
-                    nearestPickup = pickup;
-                }
-            }
-
-            if (nearestPickup != null) {
-                totalTime += shortestTime;
-                currentLocation = nearestPickup;
-                visitedPickups.add(nearestPickup);
-
-                List<Package> packagesAtLocation = pickupGroups.get(nearestPickup);
-                totalTime += calculateDeliveryTimeFromLocation(currentLocation, packagesAtLocation);
-
-                if (!packagesAtLocation.isEmpty()) {
-                    currentLocation = findOptimalFinalDeliveryLocation(currentLocation, packagesAtLocation);
-                }
-            }
+    private static double calculateTrainCostForPackage(PlanningContext context, Train train, Package pkg,
+                                                       AssignmentIndex assignments, AuctionWeights weights) {
+        RouteCostKernel kernel = RouteCostKernel.forCurrentThread();
+        kernel.clear();
+        for (Package assigned : assignments.packagesOf(train)) {
+            kernel.add(context.stationOf(assigned.getStartingNode()), context.stationOf(assigned.getEndNode()),
+                    assigned.getWeightInKg());
         }
+        kernel.add(context.stationOf(pkg.getStartingNode()), context.stationOf(pkg.getEndNode()), pkg.getWeightInKg());
 
-        return totalTime;
-    }
-
-    private static double calculateDeliveryTimeFromLocation(String startLocation, List<Package> packages) {
-        if (packages.isEmpty()) return 0;
-
-        Map<String, List<Package>> destinations = packages.stream()
-                .collect(Collectors.groupingBy(p -> p.getEndNode().getName()));
-
-        String currentLocation = startLocation;
-        double deliveryTime = 0;
-        Set<String> visitedDestinations = new HashSet<>();
-
-        while (visitedDestinations.size() < destinations.size()) {
-            String nearestDestination = null;
-            int shortestTime = Integer.MAX_VALUE;
-
-            for (String destination : destinations.keySet()) {
-                if (visitedDestinations.contains(destination)) continue;
-
-                TrainRoute route = ComputePath.shortestPathToEveryNode
-                        .get(currentLocation)
-                        .get(destination);
-
-                if (route != null && route.getTime() < shortestTime) {
-                    shortestTime = route.getTime();
-                    nearestDestination = destination;
-                }
-            }
-
-            if (nearestDestination != null) {
-                deliveryTime += shortestTime;
-                currentLocation = nearestDestination;
-                visitedDestinations.add(nearestDestination);
-            } else {
-                break;
-            }
-        }
+        Routing routing = context.getRouting();
+        int start = context.stationOf(train);
+        double immediateCost = kernel.deliveryTime(routing, start);
+        double futureCost = routing.averageTime(kernel.finalLocation(routing, start));
+        double utilizationBonus = calculateUtilizationBonus(train, kernel.totalWeight());
 
-        return deliveryTime;
+        return immediateCost + weights.futureCost * futureCost - weights.utilization * utilizationBonus;
     }
 
-    private static String findOptimalFinalDeliveryLocation(String startLocation, List<Package> packages) {
-        String finalLocation = startLocation;
-
-        Map<String, List<Package>> destinations = packages.stream()
-                .collect(Collectors.groupingBy(p -> p.getEndNode().getName()));
-
-        String currentLocation = startLocation;
-        Set<String> visited = new HashSet<>();
-
-        while (visited.size() < destinations.size()) {
-            String nearest = null;
-            int shortestTime = Integer.MAX_VALUE;
-
-            for (String dest : destinations.keySet()) {
-                if (visited.contains(dest)) continue;
-
-                TrainRoute route = ComputePath.shortestPathToEveryNode
-                        .get(currentLocation)
-                        .get(dest);
-
-                if (route != null && route.getTime() < shortestTime) {
-                    shortestTime = route.getTime();
-                    nearest = dest;
-                }
-            }
-
-            if (nearest != null) {
-                visited.add(nearest);
-                currentLocation = nearest;
-                finalLocation = nearest;
-            } else {
-                break;
-            }
-        }
-
-        return finalLocation;
+    private static double calculateUtilizationBonus(Train train, long totalWeight) {
+        double utilization = (double) totalWeight / train.getCapacityInKg();
+        return 100 * (1 / (1 + Math.exp(-10 * (utilization - 0.5))));
     }
 
-    private static double calculateFuturePositioningCost(Train train, List<Package> packages) {
-        if (packages.isEmpty()) return 0;
-
-        String finalPosition = findOptimalFinalDeliveryLocation(train.getCurrentStation(), packages);
-
-        double totalDistance = 0;
-        int stationCount = 0;
-
-        Map<String, Map<String, TrainRoute>> allPaths = ComputePath.shortestPathToEveryNode;
-        if (allPaths.containsKey(finalPosition)) {
-            for (TrainRoute route : allPaths.get(finalPosition).values()) {
-                totalDistance += route.getTime();
-                stationCount++;
+    private static AssignmentIndex assignmentsOf(RoutePlan plan) {
+        AssignmentIndex assignments = new AssignmentIndex();
+        for (int t = 0; t < plan.trainCount(); t++) {
+            for (int stop : plan.stops(t)) {
+                if (RoutePlan.isPickup(stop)) {
+                    assignments.assign(plan.pkg(RoutePlan.packageOf(stop)), plan.train(t));
+                }
             }
         }
-
-        return stationCount > 0 ? totalDistance / stationCount : 0;
-    }
-
-    private static double calculateUtilizationBonus(Train train, List<Package> packages) {
-        int totalWeight = packages.stream().mapToInt(Package::getWeightInKg).sum();
-        double utilization = (double) totalWeight / train.getCapacityInKg();
-        return 100 * (1 / (1 + Math.exp(-10 * (utilization - 0.5))));
+        return assignments;
     }
 
-    private static void executeOptimizedRoute(Train train, List<Package> packages) {
-        if (packages.isEmpty()) return;
-
-        Map<String, List<Package>> pickupGroups = packages.stream()
-                .collect(Collectors.groupingBy(p -> p.getStartingNode().getName()));
-
-        String currentLocation = train.getCurrentStation();
+    /** Drives the train along its planned stops, picking packages up as it leaves each station. */
+    private static void executeRoute(Train train, RoutePlan plan, int t, MoveLog log) {
+        int currentLocation = plan.startStation(t);
         int currentTime = train.getCurrentTime();
         int currentLoad = train.getCurrentLoad();
-
-        Set<String> visitedPickups = new HashSet<>();
-
-        while (visitedPickups.size() < pickupGroups.size()) {
-            String nearestPickup = findNearestUnvisitedPickup(currentLocation, pickupGroups, visitedPickups);
-
-            if (nearestPickup != null) {
-                if (!currentLocation.equals(nearestPickup)) {
-                    TrainRoute route = ComputePath.shortestPathToEveryNode
-                            .get(currentLocation)
-                            .get(nearestPickup);
-
-                    if (route != null) {
-                        currentTime = logMovement(train, currentLocation, nearestPickup,
-                                route, currentTime, new ArrayList<>());
-                        currentLocation = nearestPickup;
-                    }
-                }
-
-                List<Package> packagesHere = pickupGroups.get(nearestPickup);
-                currentLoad += packagesHere.stream().mapToInt(Package::getWeightInKg).sum();
-
-                currentTime = executeDeliveriesFromLocation(train, currentLocation,
-                        packagesHere, currentTime, true);
-                currentLocation = findOptimalFinalDeliveryLocation(currentLocation, packagesHere);
-
-                visitedPickups.add(nearestPickup);
-            } else {
-                break;
+        int[] stops = plan.stops(t);
+        int[] pickedUp = new int[stops.length];
+        int[] delivered = new int[stops.length];
+        int pickedUpCount = 0;
+
+        for (int i = 0; i < stops.length; i++) {
+            int stop = stops[i];
+            int station = plan.station(stop);
+            if (station != currentLocation) {
+                TrainRoute route = plan.routing().route(currentLocation, station);
+                currentTime = logMovement(log, plan.routing().getNetwork(), t, currentLocation, station, route, currentTime,
+                        pickedUp, pickedUpCount, delivered, plan.deliveriesAt(stops, i, delivered));
+                currentLocation = station;
+                pickedUpCount = 0;
+            }
+            if (RoutePlan.isPickup(stop)) {
+                Package pkg = plan.pkg(RoutePlan.packageOf(stop));
+                pickedUp[pickedUpCount++] = RoutePlan.packageOf(stop);
+                currentLoad += pkg.getWeightInKg();
             }
         }
 
-        train.setCurrentStation(currentLocation);
+        train.setCurrentStation(plan.routing().stationName(currentLocation));
         train.setCurrentTime(currentTime);
         train.setCurrentLoad(currentLoad);
     }
 
-    private static String findNearestUnvisitedPickup(String currentLocation,
-                                                     Map<String, List<Package>> pickupGroups,
-                                                     Set<String> visited) {
-        String nearest = null;
-        int shortestTime = Integer.MAX_VALUE;
-
-        for (String pickup : pickupGroups.keySet()) {
-            if (visited.contains(pickup)) continue;
-
-            TrainRoute route = ComputePath.shortestPathToEveryNode
-                    .get(currentLocation)
-                    .get(pickup);
-
-            if (route != null && route.getTime() < shortestTime) {
-                shortestTime = route.getTime();
-                nearest = pickup;
-            }
-        }
-
-        return nearest;
-    }
-
-    private static int executeDeliveriesFromLocation(Train train, String startLocation,
-                                                     List<Package> packages, int startTime,
-                                                     boolean includePickupInFirstMove) {
-        Map<String, List<Package>> destinations = packages.stream()
-                .collect(Collectors.groupingBy(p -> p.getEndNode().getName()));
+    /** Logs the hops of the route, the packages picked up leaving on the first; returns the arrival time. */
+    static int logMovement(MoveLog log, RailNetwork network, int train, int from, int to, TrainRoute route,
+                           int startTime, int[] pickupPackages, int pickupCount, int[] deliveries, int deliveryCount) {
+        int[] path = route.getShortestPath();
 
-        String currentLocation = startLocation;
         int currentTime = startTime;
-        Set<String> visitedDestinations = new HashSet<>();
-
-        while (visitedDestinations.size() < destinations.size()) {
-            String nearestDestination = null;
-            int shortestTime = Integer.MAX_VALUE;
 
-            for (String destination : destinations.keySet()) {
-                if (visitedDestinations.contains(destination)) continue;
-
-                TrainRoute route = ComputePath.shortestPathToEveryNode
-                        .get(currentLocation)
-                        .get(destination);
-
-                if (route != null && route.getTime() < shortestTime) {
-                    shortestTime = route.getTime();
-                    nearestDestination = destination;
-                }
-            }
+        for (int i = 1; i < path.length; i++) {
+            int fromStation = path[i - 1];
+            int toStation = path[i];
 
-            if (nearestDestination != null) {
-                List<Package> packagesToDeliver = destinations.get(nearestDestination);
-                TrainRoute route = ComputePath.shortestPathToEveryNode
-                        .get(currentLocation)
-                        .get(nearestDestination);
+            boolean arrives = toStation == to;
+            log.move(currentTime, train, fromStation, toStation, pickupPackages, i == 1 ? pickupCount : 0,
+                    deliveries, arrives ? deliveryCount : 0, arrives);
 
-                List<String> pickupNames = includePickupInFirstMove && visitedDestinations.isEmpty() ?
-                        packages.stream().map(Package::getName).collect(Collectors.toList()) :
-                        new ArrayList<>();
-
-                currentTime = logMovement(train, currentLocation, nearestDestination, route,
-                        currentTime, pickupNames);
-
-                currentLocation = nearestDestination;
-                visitedDestinations.add(nearestDestination);
-                includePickupInFirstMove = false;
-            } else {
-                break;
-            }
+            currentTime += getEdgeTime(network, fromStation, toStation);
         }
 
         return currentTime;
     }
 
-    private static int logMovement(Train train, String from, String to, TrainRoute route,
-                                   int startTime, List<String> pickupPackages) {
-        List<String> path = new ArrayList<>(route.getShortestPath());
-        if (!path.get(0).equals(from)) {
-            path.add(0, from);
-        }
-
-        int currentTime = startTime;
+    private static int getEdgeTime(RailNetwork network, int from, int to) {
+        int time = network.edgeTime(from, to);
+        return time < 0 ? 0 : time;
+    }
 
-        for (int i = 1; i < path.size(); i++) {
-            String fromStation = path.get(i - 1);
-            String toStation = path.get(i);
+    /** Executes every route, writing each train's moves under its heading, then the summary. */
+    private static void printResults(List<Train> trains, AssignmentIndex assignments,
+                                     RoutePlan plan, MakespanBound bound, TextMoveLog out, MoveLog moves) {
+        out.println("Result of AUCTION ALGORITHM ");
 
-            List<String> pickup = (i == 1) ? pickupPackages : new ArrayList<>();
-            List<String> dropOff = toStation.equals(to) ?
-                    Arrays.asList(to) : new ArrayList<>(); // Simplified - should include actual package names
+        for (int t = 0; t < trains.size(); t++) {
+            Train train = trains.get(t);
+            int assignedPackages = assignments.packagesOf(train).size();
 
-            train.getLog().add("W=" + currentTime +
-                    ", T=" + train.getName() +
-                    ", N1=" + fromStation +
-                    ", P1=" + pickup +
-                    ", N2=" + toStation +
-                    ", P2=" + dropOff);
+            out.println("Train " + train.getName() + " assigned " + assignedPackages + " packages:");
 
-            currentTime += getEdgeTime(fromStation, toStation);
+            if (plan.stops(t).length > 0) {
+                executeRoute(train, plan, t, moves);
+            }
+            out.println("Total time: " + train.getCurrentTime() + " minutes.\n");
         }
 
-        return currentTime;
-    }
+        long makespan = trains.stream().mapToLong(Train::getCurrentTime).max().orElse(0);
+        String unplanned = plan.plannedPackages() < bound.getServablePackages() ?
+                ", " + (bound.getServablePackages() - plan.plannedPackages()) + " packages not planned" : "";
+        out.println(String.format("Solution time: %d minutes, lower bound: %d minutes, gap: %.1f%%%s%n",
+                makespan, bound.getValue(), bound.gap(makespan), unplanned));
 
-    private static int getEdgeTime(String from, String to) {
-        for (Edge edge : ComputePath.graph.get(from)) {
-            if (edge.getEndStation().getName().equals(to)) {
-                return edge.getJourneyTimeInMinutes();
-            }
+        out.println("Package assignments:");
+        for (Map.Entry<Package, Train> entry : assignments.asMap().entrySet()) {
+            out.println("Package " + entry.getKey().getName() +
+                    " -> Train " + entry.getValue().getName());
         }
-        return 0;
     }
 
-    private static void printResults(List<Train> trains, Map<Package, Train> assignments) {
-        System.out.println("Result of AUCTION ALGORITHM ");
+    /** How much a bid weighs the train's end position and its fill level against the delivery time. */
+    static final class AuctionWeights {
+        static final AuctionWeights DEFAULT = new AuctionWeights(FUTURE_COST_WEIGHT, UTILIZATION_BONUS);
 
-        for (Train train : trains) {
-            long assignedPackages = assignments.values().stream()
-                    .filter(t -> t == train)
-                    .count();
+        final double futureCost;
+        final double utilization;
 
-            System.out.println("Train " + train.getName() + " assigned " + assignedPackages + " packages:");
-
-            for (String log : train.getLog()) {
-                System.out.println(log);
-            }
-            System.out.println("Total time: " + train.getCurrentTime() + " minutes.\n");
+        AuctionWeights(double futureCost, double utilization) {
+            this.futureCost = futureCost;
+            this.utilization = utilization;
         }
 
-        System.out.println("Package assignments:");
-        for (Map.Entry<Package, Train> entry : assignments.entrySet()) {
-            System.out.println("Package " + entry.getKey().getName() +
-                    " -> Train " + entry.getValue().getName());
+        @Override
+        public String toString() {
+            return "future=" + futureCost + ", utilization=" + utilization;
         }
     }
 
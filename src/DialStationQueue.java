@@ -0,0 +1,82 @@
+import java.util.Arrays;
+
+/**
+ * Dial's bucket queue for integer minutes: a ring of maxEdgeWeight + 1 buckets,
+ * each an intrusive doubly linked list so decrease-key unlinks in O(1).
+ */
+public class DialStationQueue implements StationQueue {
+    private int[] heads = new int[0];
+    private int[] next = new int[0];
+    private int[] previous = new int[0];
+    private int[] keys = new int[0];
+    private boolean[] queued = new boolean[0];
+    private int bucketCount;
+    private int currentKey;
+    private int size;
+
+    @Override
+    public void reset(int stations, int maxEdgeWeight) {
+        bucketCount = maxEdgeWeight + 1;
+        if (heads.length < bucketCount) {
+            heads = new int[bucketCount];
+        }
+        Arrays.fill(heads, 0, bucketCount, RailNetwork.NO_STATION);
+        if (next.length < stations) {
+            next = new int[stations];
+            previous = new int[stations];
+            keys = new int[stations];
+            queued = new boolean[stations];
+        }
+        Arrays.fill(queued, 0, stations, false);
+        currentKey = 0;
+        size = 0;
+    }
+
+    @Override
+    public void insertOrDecrease(int station, int distance) {
+        if (queued[station]) {
+            unlink(station);
+        } else {
+            queued[station] = true;
+            size++;
+        }
+        keys[station] = distance;
+        int bucket = distance % bucketCount;
+        previous[station] = RailNetwork.NO_STATION;
+        next[station] = heads[bucket];
+        if (heads[bucket] != RailNetwork.NO_STATION) {
+            previous[heads[bucket]] = station;
+        }
+        heads[bucket] = station;
+    }
+
+    @Override
+    public int poll() {
+        if (size == 0) {
+            return RailNetwork.NO_STATION;
+        }
+        // every queued key lies in [currentKey, currentKey + maxEdgeWeight], so one lap is enough
+        int bucket = currentKey % bucketCount;
+        while (heads[bucket] == RailNetwork.NO_STATION) {
+            currentKey++;
+            bucket = bucket + 1 == bucketCount ? 0 : bucket + 1;
+        }
+        int station = heads[bucket];
+        unlink(station);
+        queued[station] = false;
+        size--;
+        return station;
+    }
+
+    private void unlink(int station) {
+        int bucket = keys[station] % bucketCount;
+        if (previous[station] == RailNetwork.NO_STATION) {
+            heads[bucket] = next[station];
+        } else {
+            next[previous[station]] = next[station];
+        }
+        if (next[station] != RailNetwork.NO_STATION) {
+            previous[next[station]] = previous[station];
+        }
+    }
+}
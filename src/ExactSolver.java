@@ -0,0 +1,311 @@
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Provably optimal makespan for small instances. For every train a dynamic program over package
+ * states (untouched, on board, delivered; one base-3 digit per package) finds the shortest route
+ * serving each package subset with pickups before deliveries and within capacity. A second
+ * program over subsets then splits the packages between trains. States that cannot beat the
+ * heuristic plan's makespan are pruned, and each layer of states is solved in parallel.
+ */
+public class ExactSolver {
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final RoutePlan plan;
+    private final ForkJoinPool pool;
+    private final int[] universe;
+    private final int n;
+    private final int[] pow3;
+
+    private ExactSolver(RoutePlan plan, ForkJoinPool pool) {
+        this.plan = plan;
+        this.pool = pool;
+        this.universe = IntStream.range(0, plan.packageCount()).filter(plan::isServable).toArray();
+        this.n = universe.length;
+        this.pow3 = new int[n + 1];
+        pow3[0] = 1;
+        for (int i = 1; i <= n; i++) {
+            pow3[i] = pow3[i - 1] * 3;
+        }
+    }
+
+    /**
+     * Optimal plan for the trains and packages of {@code incumbent}, which bounds the search and
+     * is returned unchanged when it is already optimal.
+     */
+    public static RoutePlan solve(RoutePlan incumbent, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            return new ExactSolver(incumbent, pool).solve();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private RoutePlan solve() {
+        int trains = plan.trainCount();
+        // a plan that leaves out a servable package cannot bound anything
+        long bound = plan.plannedPackages() == n ? plan.makespan() : INF;
+
+        int masks = 1 << n;
+        int[][] finish = new int[trains][];
+        for (int t = 0; t < trains; t++) {
+            long trainBound = Math.min(INF - 1L, bound - plan.startTime(t));
+            if (trainBound < 0) {
+                finish[t] = new int[masks];
+                Arrays.fill(finish[t], INF);
+            } else {
+                finish[t] = new TrainTable(t, universe, (int) trainBound).subsetFinishTimes();
+            }
+        }
+
+        // best[t][m]: smallest makespan for trains 0..t serving exactly the packages in m
+        int[][] best = new int[trains][];
+        int[][] share = new int[trains][];
+        best[0] = finish[0];
+        share[0] = IntStream.range(0, masks).toArray();
+        for (int t = 1; t < trains; t++) {
+            int[] previous = best[t - 1];
+            int[] own = finish[t];
+            int[] current = new int[masks];
+            int[] choice = new int[masks];
+            parallel(IntStream.range(0, masks), m -> {
+                int bestValue = INF;
+                int bestSub = 0;
+                // every submask of m, including m itself and the empty set
+                for (int sub = m; ; sub = (sub - 1) & m) {
+                    int value = Math.max(previous[m ^ sub], own[sub]);
+                    if (value < bestValue) {
+                        bestValue = value;
+                        bestSub = sub;
+                    }
+                    if (sub == 0) {
+                        break;
+                    }
+                }
+                current[m] = bestValue;
+                choice[m] = bestSub;
+            });
+            best[t] = current;
+            share[t] = choice;
+        }
+
+        int all = masks - 1;
+        if (best[trains - 1][all] == INF || best[trains - 1][all] >= bound) {
+            return plan;
+        }
+
+        RoutePlan optimal = new RoutePlan(plan.routing(), trainsOf(plan), packagesOf(plan));
+        int remaining = all;
+        for (int t = trains - 1; t >= 0; t--) {
+            int own = share[t][remaining];
+            int[] subset = subset(own);
+            optimal.setRoute(t, new TrainTable(t, subset, INF - 1).route(finish[t][own] - plan.startTime(t)));
+            remaining ^= own;
+        }
+        return optimal;
+    }
+
+    private int[] subset(int mask) {
+        return IntStream.range(0, n).filter(i -> (mask & (1 << i)) != 0).map(i -> universe[i]).toArray();
+    }
+
+    private static List<Train> trainsOf(RoutePlan plan) {
+        List<Train> trains = new ArrayList<>();
+        for (int t = 0; t < plan.trainCount(); t++) {
+            trains.add(plan.train(t));
+        }
+        return trains;
+    }
+
+    private static List<Package> packagesOf(RoutePlan plan) {
+        List<Package> packages = new ArrayList<>();
+        for (int p = 0; p < plan.packageCount(); p++) {
+            packages.add(plan.pkg(p));
+        }
+        return packages;
+    }
+
+    private void parallel(IntStream range, IntConsumer task) {
+        try {
+            pool.submit(() -> range.parallel().forEach(task)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Exact solver was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Exact solver failed", e.getCause());
+        }
+    }
+
+    /**
+     * Shortest route times of one train over the states of a package list. Entry
+     * {@code time[state * stops + last]} is the best time to reach the state with stop
+     * {@code last} visited most recently; stop 2i picks package i up and 2i + 1 delivers it.
+     */
+    private class TrainTable {
+        private final int train;
+        private final int[] packages;
+        private final int k;
+        private final int stops;
+        private final int[] legs;
+        private final int[] startLegs;
+        private final int[] time;
+
+        TrainTable(int train, int[] packages, int bound) {
+            this.train = train;
+            this.packages = packages;
+            this.k = packages.length;
+            this.stops = 2 * k;
+            int[] stations = new int[stops];
+            for (int i = 0; i < k; i++) {
+                stations[2 * i] = plan.station(RoutePlan.pickupStop(packages[i]));
+                stations[2 * i + 1] = plan.station(RoutePlan.deliveryStop(packages[i]));
+            }
+            legs = new int[stops * stops];
+            startLegs = new int[stops];
+            Routing routing = plan.routing();
+            for (int a = 0; a < stops; a++) {
+                startLegs[a] = routing.time(plan.startStation(train), stations[a]);
+                for (int b = 0; b < stops; b++) {
+                    legs[a * stops + b] = routing.time(stations[a], stations[b]);
+                }
+            }
+            time = new int[pow3[k] * stops];
+            Arrays.fill(time, INF);
+            fill(bound);
+        }
+
+        private void fill(int bound) {
+            int[][] layers = layers();
+            for (int layer = 1; layer < layers.length; layer++) {
+                int[] states = layers[layer];
+                parallel(Arrays.stream(states), state -> solveState(state, bound));
+            }
+        }
+
+        /** States grouped by the number of stops visited, so each layer only reads the one before. */
+        private int[][] layers() {
+            int states = pow3[k];
+            int[] visited = new int[states];
+            int[] counts = new int[stops + 1];
+            for (int state = 1; state < states; state++) {
+                visited[state] = visited[state / 3] + state % 3;
+                counts[visited[state]]++;
+            }
+            int[][] layers = new int[stops + 1][];
+            for (int layer = 0; layer <= stops; layer++) {
+                layers[layer] = new int[counts[layer]];
+            }
+            int[] next = new int[stops + 1];
+            for (int state = 1; state < states; state++) {
+                layers[visited[state]][next[visited[state]]++] = state;
+            }
+            return layers;
+        }
+
+        private void solveState(int state, int bound) {
+            int load = 0;
+            for (int i = 0, rest = state; i < k; i++, rest /= 3) {
+                if (rest % 3 == 1) {
+                    load += plan.weight(packages[i]);
+                }
+            }
+            if (load > plan.capacity(train)) {
+                return;
+            }
+            for (int i = 0, rest = state; i < k; i++, rest /= 3) {
+                int digit = rest % 3;
+                if (digit == 0) {
+                    continue;
+                }
+                int last = digit == 1 ? 2 * i : 2 * i + 1;
+                int previous = state - pow3[i];
+                int best = previous == 0 ? startLegs[last] : INF;
+                if (previous != 0) {
+                    int base = previous * stops;
+                    for (int before = 0; before < stops; before++) {
+                        int reached = time[base + before];
+                        int leg = legs[before * stops + last];
+                        if (reached != INF && leg != ComputePath.UNREACHABLE && (long) reached + leg < best) {
+                            best = reached + leg;
+                        }
+                    }
+                }
+                if (best != INF && (long) best + remainingBound(state, last) <= bound) {
+                    time[state * stops + last] = best;
+                }
+            }
+        }
+
+        /** Every package still on board has to be carried on to its destination. */
+        private int remainingBound(int state, int last) {
+            int bound = 0;
+            for (int i = 0, rest = state; i < k; i++, rest /= 3) {
+                if (rest % 3 == 1) {
+                    int leg = legs[last * stops + 2 * i + 1];
+                    if (leg == ComputePath.UNREACHABLE) {
+                        return INF;
+                    }
+                    bound = Math.max(bound, leg);
+                }
+            }
+            return bound;
+        }
+
+        /** Finish time of the train for every subset of the solver's packages, INF when out of reach. */
+        int[] subsetFinishTimes() {
+            int[] finish = new int[1 << k];
+            finish[0] = plan.startTime(train);
+            for (int mask = 1; mask < finish.length; mask++) {
+                int state = 0;
+                for (int i = 0; i < k; i++) {
+                    if ((mask & (1 << i)) != 0) {
+                        state += 2 * pow3[i];
+                    }
+                }
+                int best = INF;
+                for (int last = 1; last < stops; last += 2) {
+                    best = Math.min(best, time[state * stops + last]);
+                }
+                finish[mask] = best == INF ? INF : plan.startTime(train) + best;
+            }
+            return finish;
+        }
+
+        /** Stops of a route serving every package in the table in exactly {@code length}, walked back from the end. */
+        int[] route(int length) {
+            int[] route = new int[stops];
+            // every package delivered: all digits are 2
+            int state = pow3[k] - 1;
+            int last = -1;
+            for (int candidate = 1; candidate < stops; candidate += 2) {
+                if (time[state * stops + candidate] == length) {
+                    last = candidate;
+                    break;
+                }
+            }
+            for (int position = stops - 1; position >= 0; position--) {
+                int i = last / 2;
+                route[position] = (last & 1) == 0 ? RoutePlan.pickupStop(packages[i]) : RoutePlan.deliveryStop(packages[i]);
+                int reached = time[state * stops + last];
+                int previous = state - pow3[i];
+                if (previous == 0) {
+                    break;
+                }
+                for (int before = 0; before < stops; before++) {
+                    int value = time[previous * stops + before];
+                    int leg = legs[before * stops + last];
+                    if (value != INF && leg != ComputePath.UNREACHABLE && value + leg == reached) {
+                        last = before;
+                        break;
+                    }
+                }
+                state = previous;
+            }
+            return route;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads whole instances in the README's input format without prompting: files are memory-mapped,
+ * other input goes through a buffered channel. Station names are interned straight from the
+ * bytes into the network, every line is checked in the same pass, and all problems found are
+ * reported together with their line numbers.
+ */
+public class InstanceLoader {
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int READ_BUFFER_BYTES = 1 << 16;
+
+    @Getter
+    public static final class Instance {
+        private final String source;
+        private final RailNetwork.Builder network;
+        private final List<Package> packages;
+        private final List<Train> trains;
+
+        Instance(String source, RailNetwork.Builder network, List<Package> packages, List<Train> trains) {
+            this.source = source;
+            this.network = network;
+            this.packages = packages;
+            this.trains = trains;
+        }
+    }
+
+    private final String source;
+    private final Lines lines;
+    private final List<String> errors = new ArrayList<>();
+    private final RailNetwork.Builder network = new RailNetwork.Builder();
+    private final StationNames stations = new StationNames();
+    private final List<Node> nodes = new ArrayList<>();
+    private final int[] starts = new int[5];
+    private final int[] ends = new int[5];
+    // set once running out of input is reported, so the sections after it add no errors of their own
+    private boolean ended;
+
+    private InstanceLoader(String source, Lines lines) {
+        this.source = source;
+        this.lines = lines;
+    }
+
+    public static Instance load(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // a single mapping is limited to 2 GB, bigger files are streamed
+            Lines lines = size <= Integer.MAX_VALUE
+                    ? new Lines(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), null)
+                    : new Lines(ByteBuffer.allocate(READ_BUFFER_BYTES).flip(), channel);
+            return new InstanceLoader(file.toString(), lines).read();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + file, e);
+        }
+    }
+
+    public static Instance load(InputStream in, String source) {
+        try {
+            return new InstanceLoader(source, new Lines(ByteBuffer.allocate(READ_BUFFER_BYTES).flip(),
+                    Channels.newChannel(in))).read();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + source, e);
+        }
+    }
+
+    /** Loads the files on up to {@code threads} threads, in the order given. */
+    public static List<Instance> loadAll(List<Path> files, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        try {
+            List<Future<Instance>> loads = new ArrayList<>();
+            for (Path file : files) {
+                loads.add(pool.submit(() -> load(file)));
+            }
+            List<Instance> instances = new ArrayList<>();
+            for (Future<Instance> load : loads) {
+                instances.add(load.get());
+            }
+            return instances;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Loading was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Loading failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Instance read() throws IOException {
+        int stationCount = count("stations");
+        for (int i = 0; i < stationCount && nextLine("station", i, stationCount); i++) {
+            readStation();
+        }
+        int edgeCount = count("edges");
+        for (int i = 0; i < edgeCount && nextLine("edge", i, edgeCount); i++) {
+            readEdge();
+        }
+        int packageCount = count("packages");
+        List<Package> packages = new ArrayList<>(packageCount);
+        for (int i = 0; i < packageCount && nextLine("package", i, packageCount); i++) {
+            readPackage(packages);
+        }
+        int trainCount = count("trains");
+        List<Train> trains = new ArrayList<>(trainCount);
+        for (int i = 0; i < trainCount && nextLine("train", i, trainCount); i++) {
+            readTrain(trains);
+        }
+        if (errors.isEmpty() && lines.next()) {
+            error("unexpected line after the last train");
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(source + " is not a valid instance:\n" + String.join("\n", errors));
+        }
+        return new Instance(source, network, packages, trains);
+    }
+
+    private int count(String what) throws IOException {
+        if (ended) {
+            return 0;
+        }
+        if (!lines.next()) {
+            error("missing number of " + what);
+            ended = true;
+            return 0;
+        }
+        if (split() != 1) {
+            error("expected the number of " + what);
+            return 0;
+        }
+        int count = number(0, "number of " + what);
+        if (count <= 0 && count != Integer.MIN_VALUE) {
+            error("the number of " + what + " must be positive");
+        }
+        return Math.max(count, 0);
+    }
+
+    private boolean nextLine(String what, int index, int count) throws IOException {
+        if (lines.next()) {
+            return true;
+        }
+        error("expected " + count + " " + what + " lines, found " + index);
+        ended = true;
+        return false;
+    }
+
+    private void readStation() {
+        if (split() != 1 || starts[0] == ends[0]) {
+            error("expected a station name");
+            return;
+        }
+        if (stations.find(lines.line, starts[0], ends[0]) >= 0) {
+            error("station " + text(0) + " already exists");
+            return;
+        }
+        String name = text(0);
+        stations.add(lines.line, starts[0], ends[0], network.addStation(name));
+        nodes.add(new Node(name));
+    }
+
+    private void readEdge() {
+        if (split() != 4) {
+            error("an edge needs a name, start station, end station and journey time");
+            return;
+        }
+        int from = station(1);
+        int to = station(2);
+        int time = number(3, "journey time");
+        if (time < 0 && time != Integer.MIN_VALUE) {
+            error("the journey time must not be negative");
+        } else if (from >= 0 && to >= 0 && time >= 0) {
+            network.addEdge(from, to, time);
+        }
+    }
+
+    private void readPackage(List<Package> packages) {
+        if (split() != 4) {
+            error("a package needs a name, weight, start station and destination station");
+            return;
+        }
+        int weight = positive(1, "weight");
+        int from = station(2);
+        int to = station(3);
+        if (weight > 0 && from >= 0 && to >= 0) {
+            packages.add(new Package(text(0), weight, nodes.get(from), nodes.get(to)));
+        }
+    }
+
+    private void readTrain(List<Train> trains) {
+        if (split() != 3) {
+            error("a train needs a name, capacity and current station");
+            return;
+        }
+        int capacity = positive(1, "capacity");
+        int station = station(2);
+        if (capacity > 0 && station >= 0) {
+            trains.add(new Train(text(0), capacity, nodes.get(station).getName()));
+        }
+    }
+
+    /** Splits the current line at commas into trimmed fields; returns how many there are. */
+    private int split() {
+        byte[] line = lines.line;
+        int fields = 0;
+        int start = 0;
+        for (int i = 0; i <= lines.length; i++) {
+            if (i == lines.length || line[i] == ',') {
+                if (fields < starts.length) {
+                    int from = start;
+                    int to = i;
+                    while (from < to && isBlank(line[from])) {
+                        from++;
+                    }
+                    while (to > from && isBlank(line[to - 1])) {
+                        to--;
+                    }
+                    starts[fields] = from;
+                    ends[fields] = to;
+                }
+                fields++;
+                start = i + 1;
+            }
+        }
+        return fields;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private String text(int field) {
+        return new String(lines.line, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    private int station(int field) {
+        int id = stations.find(lines.line, starts[field], ends[field]);
+        if (id < 0) {
+            error("unknown station " + text(field));
+        }
+        return id;
+    }
+
+    private int positive(int field, String what) {
+        int value = number(field, what);
+        if (value <= 0 && value != Integer.MIN_VALUE) {
+            error("the " + what + " must be positive");
+        }
+        return value;
+    }
+
+    /** The field as an int, or Integer.MIN_VALUE after reporting that it is not one. */
+    private int number(int field, String what) {
+        byte[] line = lines.line;
+        int from = starts[field];
+        int to = ends[field];
+        boolean negative = from < to && line[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to) {
+            error("the " + what + " is not a number: '" + text(field) + "'");
+            return Integer.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9 || (value = value * 10 + digit) > Integer.MAX_VALUE) {
+                error("the " + what + " is not a number: '" + text(field) + "'");
+                return Integer.MIN_VALUE;
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private void error(String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(source + ":" + lines.number + ": " + message);
+        } else if (errors.size() == MAX_REPORTED_ERRORS) {
+            errors.add("...");
+        }
+    }
+
+    /** Non-blank lines of the input as bytes, without the line break, numbered from 1. */
+    private static final class Lines {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+        byte[] line = new byte[256];
+        int length;
+        int number;
+
+        Lines(ByteBuffer buffer, ReadableByteChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+
+        boolean next() throws IOException {
+            while (readLine()) {
+                if (length > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean readLine() throws IOException {
+            length = 0;
+            boolean read = false;
+            while (buffer.hasRemaining() || refill()) {
+                read = true;
+                byte b = buffer.get();
+                if (b == '\n') {
+                    break;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, 2 * length);
+                }
+                line[length++] = b;
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            // a line of spaces counts as blank
+            int blank = 0;
+            while (blank < length && isBlank(line[blank])) {
+                blank++;
+            }
+            if (blank == length) {
+                length = 0;
+            }
+            if (read) {
+                number++;
+            }
+            return read;
+        }
+
+        private boolean refill() throws IOException {
+            if (channel == null) {
+                return false;
+            }
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            return read > 0;
+        }
+    }
+
+    /** Open-addressing table from station name bytes to station id, so lookups decode nothing. */
+    private static final class StationNames {
+        private byte[][] names = new byte[16][];
+        private int[] ids = new int[16];
+        private int size;
+
+        int find(byte[] bytes, int from, int to) {
+            int mask = names.length - 1;
+            for (int slot = hash(bytes, from, to) & mask; names[slot] != null; slot = (slot + 1) & mask) {
+                if (Arrays.equals(names[slot], 0, names[slot].length, bytes, from, to)) {
+                    return ids[slot];
+                }
+            }
+            return -1;
+        }
+
+        void add(byte[] bytes, int from, int to, int id) {
+            if (2 * (size + 1) > names.length) {
+                grow();
+            }
+            put(Arrays.copyOfRange(bytes, from, to), id);
+            size++;
+        }
+
+        private void put(byte[] name, int id) {
+            int mask = names.length - 1;
+            int slot = hash(name, 0, name.length) & mask;
+            while (names[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            names[slot] = name;
+            ids[slot] = id;
+        }
+
+        private void grow() {
+            byte[][] oldNames = names;
+            int[] oldIds = ids;
+            names = new byte[2 * oldNames.length][];
+            ids = new int[2 * oldNames.length];
+            for (int i = 0; i < oldNames.length; i++) {
+                if (oldNames[i] != null) {
+                    put(oldNames[i], oldIds[i]);
+                }
+            }
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + bytes[i];
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
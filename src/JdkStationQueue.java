@@ -0,0 +1,39 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * java.util.PriorityQueue with lazy deletion: a decrease-key adds a new entry and
+ * outdated entries are skipped when polled.
+ */
+public class JdkStationQueue implements StationQueue {
+    private final PriorityQueue<Long> heap = new PriorityQueue<>();
+    private int[] keys = new int[0];
+
+    @Override
+    public void reset(int stations, int maxEdgeWeight) {
+        heap.clear();
+        if (keys.length < stations) {
+            keys = new int[stations];
+        }
+        Arrays.fill(keys, 0, stations, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void insertOrDecrease(int station, int distance) {
+        keys[station] = distance;
+        heap.add(((long) distance << 32) | station);
+    }
+
+    @Override
+    public int poll() {
+        while (!heap.isEmpty()) {
+            long entry = heap.poll();
+            int station = (int) entry;
+            if ((int) (entry >>> 32) == keys[station]) {
+                keys[station] = -1;
+                return station;
+            }
+        }
+        return RailNetwork.NO_STATION;
+    }
+}
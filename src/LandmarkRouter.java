@@ -0,0 +1,166 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Point-to-point A* with ALT lower bounds: for every landmark L the triangle inequality
+ * gives |d(L, to) - d(L, v)| <= d(v, to) on the undirected network. Landmarks are picked by
+ * farthest-point selection and their distance rows are computed once up front.
+ */
+public class LandmarkRouter implements RouteTable {
+    private final RailNetwork network;
+    private final int[] landmarks;
+    private final int[][] landmarkDistances;
+    private final Map<Integer, Double> averageTimes = new ConcurrentHashMap<>();
+    private final ThreadLocal<Search> searches;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong settledStations = new AtomicLong();
+
+    public LandmarkRouter(RailNetwork network, int landmarkCount) {
+        this.network = network;
+        int n = network.size();
+        int count = Math.max(1, Math.min(landmarkCount, n));
+
+        // farthest-point selection: each new landmark is the station farthest from all chosen ones
+        int[] chosen = new int[count];
+        int[][] rows = new int[count][];
+        int[] nearest = new int[n];
+        Arrays.fill(nearest, ComputePath.UNREACHABLE);
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            chosen[i] = next;
+            rows[i] = ComputePath.djikstra(network, next).getDistances();
+            int farthest = next;
+            for (int station = 0; station < n; station++) {
+                nearest[station] = Math.min(nearest[station], rows[i][station]);
+                // unreachable stations count as farthest, so other components get landmarks too
+                if (nearest[station] > nearest[farthest]) {
+                    farthest = station;
+                }
+            }
+            next = farthest;
+        }
+        this.landmarks = chosen;
+        this.landmarkDistances = rows;
+        this.searches = ThreadLocal.withInitial(() -> new Search(n));
+    }
+
+    @Override
+    public TrainRoute route(int from, int to) {
+        Search search = searches.get();
+        search.run(from, to);
+        if (search.distances[to] == ComputePath.UNREACHABLE) {
+            return null;
+        }
+        return new TrainRoute(search.distances[to], ShortestPathTree.buildPath(search.previous, to));
+    }
+
+    @Override
+    public int time(int from, int to) {
+        Search search = searches.get();
+        search.run(from, to);
+        return search.distances[to];
+    }
+
+    @Override
+    public int[] path(int from, int to) {
+        TrainRoute route = route(from, to);
+        return route == null ? null : route.getShortestPath();
+    }
+
+    /** Needs a full tree, so it is solved once per source and remembered. */
+    @Override
+    public double averageTime(int from) {
+        return averageTimes.computeIfAbsent(from, source -> ComputePath.djikstra(network, source).averageTime());
+    }
+
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    public long getQueries() {
+        return queries.get();
+    }
+
+    public double getAverageSettled() {
+        long count = queries.get();
+        return count == 0 ? 0 : (double) settledStations.get() / count;
+    }
+
+    private int lowerBound(int station, int to) {
+        int bound = 0;
+        for (int[] row : landmarkDistances) {
+            int atStation = row[station];
+            int atTarget = row[to];
+            if (atStation == ComputePath.UNREACHABLE || atTarget == ComputePath.UNREACHABLE) {
+                continue;
+            }
+            bound = Math.max(bound, Math.abs(atTarget - atStation));
+        }
+        return bound;
+    }
+
+    private class Search {
+        final int[] distances;
+        final int[] previous;
+        private final int[] bounds;
+        private final List<Integer> touched = new ArrayList<>();
+        private final PriorityQueue<Long> queue = new PriorityQueue<>();
+
+        Search(int stations) {
+            distances = new int[stations];
+            previous = new int[stations];
+            bounds = new int[stations];
+            Arrays.fill(distances, ComputePath.UNREACHABLE);
+        }
+
+        void run(int from, int to) {
+            for (int station : touched) {
+                distances[station] = ComputePath.UNREACHABLE;
+            }
+            touched.clear();
+            queue.clear();
+            queries.incrementAndGet();
+
+            visit(from, 0, RailNetwork.NO_STATION, to);
+            long settled = 0;
+            while (!queue.isEmpty()) {
+                long entry = queue.poll();
+                int station = (int) entry;
+                // the key is distance + bound; an entry whose distance has since improved is stale
+                if ((int) (entry >>> 32) != distances[station] + bounds[station]) {
+                    continue;
+                }
+                settled++;
+                if (station == to) {
+                    break;
+                }
+                for (int e = network.firstEdge(station); e < network.endEdge(station); e++) {
+                    int target = network.target(e);
+                    int candidate = distances[station] + network.weight(e);
+                    if (candidate < distances[target]) {
+                        visit(target, candidate, station, to);
+                    }
+                }
+            }
+            settledStations.addAndGet(settled);
+        }
+
+        private void visit(int station, int distance, int parent, int to) {
+            if (distances[station] == ComputePath.UNREACHABLE) {
+                touched.add(station);
+                bounds[station] = lowerBound(station, to);
+            }
+            distances[station] = distance;
+            previous[station] = parent;
+            queue.add(((long) (distance + bounds[station]) << 32) | station);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LandmarkRouter{landmarks=%d, queries=%d, averageSettled=%.1f}",
+                landmarks.length, getQueries(), getAverageSettled());
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solves a source only the first time it is queried and keeps the resulting trees
+ * in an LRU cache of bounded size, so memory stays flat on large networks.
+ */
+public class LazyRouteTable implements TreeRouteTable {
+    private final RailNetwork network;
+    private final int maxTrees;
+    private final Map<Integer, ShortestPathTree> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LazyRouteTable(RailNetwork network, int maxTrees) {
+        this.network = network;
+        this.maxTrees = Math.max(1, maxTrees);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ShortestPathTree> eldest) {
+                if (size() > LazyRouteTable.this.maxTrees) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Largest cache that fits in the budget, at two int rows per tree. */
+    public static LazyRouteTable withMemoryBudget(RailNetwork network, long budgetBytes) {
+        long bytesPerTree = 8L * network.size() + 64;
+        return new LazyRouteTable(network, (int) Math.min(Integer.MAX_VALUE, budgetBytes / bytesPerTree));
+    }
+
+    @Override
+    public int time(int from, int to) {
+        ShortestPathTree tree = cached(from);
+        if (tree != null) {
+            hits.incrementAndGet();
+            return tree.getDistances()[to];
+        }
+        // the network is undirected, so a tree rooted at the destination answers the query too
+        tree = cached(to);
+        if (tree != null) {
+            hits.incrementAndGet();
+            return tree.getDistances()[from];
+        }
+        return solve(from).getDistances()[to];
+    }
+
+    @Override
+    public int[] path(int from, int to) {
+        ShortestPathTree tree = solvedTree(from);
+        return tree.getDistances()[to] == ComputePath.UNREACHABLE ? null : tree.pathTo(to);
+    }
+
+    @Override
+    public double averageTime(int from) {
+        return solvedTree(from).averageTime();
+    }
+
+    @Override
+    public synchronized void store(ShortestPathTree tree) {
+        cache.put(tree.getSource(), tree);
+    }
+
+    /** Only trees still in the cache; a missing source is simply solved again on its next query. */
+    @Override
+    public ShortestPathTree tree(int source) {
+        return cached(source);
+    }
+
+
+    /** The cached trees, in the same order; sources missing from the cache are solved on the given network. */
+    @Override
+    public synchronized TreeRouteTable copyFor(RailNetwork network) {
+        LazyRouteTable copy = new LazyRouteTable(network, maxTrees);
+        copy.cache.putAll(cache);
+        return copy;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public int getMaxTrees() {
+        return maxTrees;
+    }
+
+    private ShortestPathTree solvedTree(int source) {
+        ShortestPathTree tree = cached(source);
+        if (tree != null) {
+            hits.incrementAndGet();
+            return tree;
+        }
+        return solve(source);
+    }
+
+    private ShortestPathTree solve(int source) {
+        misses.incrementAndGet();
+        ShortestPathTree tree;
+        // solved outside the lock; two threads missing the same source both compute it
+        tree = ComputePath.djikstra(network, source);
+        store(tree);
+        return tree;
+    }
+
+    private synchronized ShortestPathTree cached(int source) {
+        return cache.get(source);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LazyRouteTable{trees=%d/%d, hits=%d, misses=%d, evictions=%d}",
+                size(), maxTrees, getHits(), getMisses(), getEvictions());
+    }
+}
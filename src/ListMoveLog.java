@@ -0,0 +1,28 @@
+import java.util.List;
+import java.util.function.IntFunction;
+
+/** Keeps moves as text lines in a list per train, such as {@link Train#getLog()}. */
+public class ListMoveLog implements MoveLog {
+    private final IntFunction<List<String>> logs;
+    private final RailNetwork network;
+    private final IntFunction<String> trainNames;
+    private final IntFunction<String> packageNames;
+    private final StringBuilder line = new StringBuilder(128);
+
+    public ListMoveLog(IntFunction<List<String>> logs, RailNetwork network, IntFunction<String> trainNames,
+                       IntFunction<String> packageNames) {
+        this.logs = logs;
+        this.network = network;
+        this.trainNames = trainNames;
+        this.packageNames = packageNames;
+    }
+
+    @Override
+    public void move(int time, int train, int from, int to, int[] pickups, int pickupCount, int[] deliveries,
+                     int deliveryCount, boolean arrives) {
+        line.setLength(0);
+        TextMoveLog.format(line, network, time, trainNames.apply(train), from, to, pickups, pickupCount, packageNames,
+                arrives);
+        logs.apply(train).add(line.toString());
+    }
+}
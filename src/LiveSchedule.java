@@ -0,0 +1,379 @@
+import java.util.*;
+
+/**
+ * A plan that keeps running while packages arrive. Each train's route is split at the stop it
+ * is travelling to: moves up to there have happened or are under way and are never changed, the
+ * stops after it are still open, and every new package is inserted into the open stops of the
+ * train that would finish earliest with it. Moves are written to the trains' logs as the clock
+ * passes them.
+ * <p>
+ * Disruptions re-plan only what they touch: the open pickups of the affected trains go back to
+ * the cheapest train that can take them, every other route keeps its order, and the caller gets
+ * the planned moves that changed. An edge closure changes only this schedule's routing.
+ */
+public class LiveSchedule {
+    // a train out of service has no capacity left, not even for weightless packages
+    private static final int OUT_OF_SERVICE = -1;
+
+    private final List<Train> trains;
+    private final RoutePlan plan;
+    private final MoveLog log;
+    // load on board where each open route starts, and what was picked up there
+    private final int[] loads;
+    private final int[][] pickedUp;
+    private final int[] pickedUpCount;
+    private final boolean[] broken;
+    // packages on broken down trains, handed over once the train reaches its station
+    private final PriorityQueue<Handover> handovers = new PriorityQueue<>(Comparator.comparingInt(h -> h.time));
+    private int now;
+
+    private long submitted;
+    private long rejected;
+    private long insertionNanos;
+
+    /** Sends moves to the given log as they are made, or to the trains' own logs when it is null. */
+    public LiveSchedule(Routing routing, List<Train> trains, MoveLog log) {
+        this.trains = trains;
+        this.plan = new RoutePlan(routing, trains, new ArrayList<>());
+        this.log = log != null ? log : new ListMoveLog(t -> trains.get(t).getLog(), routing.getNetwork(),
+                t -> trains.get(t).getName(), p -> plan.pkg(p).getName());
+        this.loads = new int[trains.size()];
+        this.pickedUp = new int[trains.size()][8];
+        this.pickedUpCount = new int[trains.size()];
+        this.broken = new boolean[trains.size()];
+        for (int t = 0; t < trains.size(); t++) {
+            loads[t] = trains.get(t).getCurrentLoad();
+            now = t == 0 ? plan.startTime(t) : Math.min(now, plan.startTime(t));
+        }
+    }
+
+    /**
+     * Moves the clock to the package's arrival and inserts it at its cheapest feasible place.
+     * Returns the train that will carry it, or null when no train can.
+     */
+    public synchronized Train submit(Package pkg, int arrivalTime) {
+        advanceTo(arrivalTime);
+        submitted++;
+        int train = insert(pkg);
+        return train < 0 ? null : trains.get(train);
+    }
+
+    private int insert(Package pkg) {
+        long start = System.nanoTime();
+        int train = plan.insertCheapest(plan.addPackage(pkg));
+        insertionNanos += System.nanoTime() - start;
+        if (train < 0) {
+            rejected++;
+        }
+        return train;
+    }
+
+    /** Commits every move that has started by {@code time}. */
+    public synchronized void advanceTo(int time) {
+        if (time < now) {
+            throw new IllegalArgumentException("Cannot go back from minute " + now + " to " + time);
+        }
+        while (!handovers.isEmpty() && handovers.peek().time <= time) {
+            Handover handover = handovers.poll();
+            moveClock(Math.max(now, handover.time));
+            insert(handover.pkg);
+        }
+        moveClock(time);
+    }
+
+    private void moveClock(int time) {
+        now = time;
+        for (int t = 0; t < trains.size(); t++) {
+            advance(t, false);
+        }
+    }
+
+    /**
+     * The train reaches the stop it is heading to, or sets off from where it is idle, the given
+     * number of minutes later. Its open pickups are re-planned.
+     */
+    public synchronized ScheduleDiff delay(Train train, int minutes) {
+        if (minutes < 0) {
+            throw new IllegalArgumentException("Delay must not be negative: " + minutes);
+        }
+        int t = indexOf(train);
+        Snapshot before = new Snapshot(false);
+        plan.rebase(t, plan.startStation(t), plan.startTime(t) + minutes, plan.capacity(t), plan.stops(t));
+        train.setCurrentTime(plan.startTime(t));
+        List<String> unplanned = new ArrayList<>();
+        reinsert(release(t), unplanned);
+        return diff(before, unplanned);
+    }
+
+    /**
+     * The train goes out of service at the stop it is heading to. Its open pickups are re-planned
+     * at once; what it carries is unloaded there and handed to other trains when it arrives.
+     */
+    public synchronized ScheduleDiff breakdown(Train train) {
+        int t = indexOf(train);
+        if (broken[t]) {
+            throw new IllegalArgumentException(train.getName() + " is already out of service");
+        }
+        broken[t] = true;
+        Snapshot before = new Snapshot(false);
+        List<Integer> released = release(t);
+        int station = plan.startStation(t);
+        int time = plan.startTime(t);
+        List<Package> carried = new ArrayList<>();
+        for (int stop : plan.stops(t)) {
+            Package pkg = plan.pkg(RoutePlan.packageOf(stop));
+            carried.add(new Package(pkg.getName(), pkg.getWeightInKg(), new Node(plan.routing().stationName(station)),
+                    pkg.getEndNode()));
+        }
+        plan.rebase(t, station, time, OUT_OF_SERVICE, new int[0]);
+        loads[t] = 0;
+        train.setCurrentLoad(0);
+
+        List<String> unplanned = new ArrayList<>();
+        reinsert(released, unplanned);
+        for (Package pkg : carried) {
+            if (time > now) {
+                handovers.add(new Handover(time, pkg));
+            } else if (insert(pkg) < 0) {
+                unplanned.add(pkg.getName());
+            }
+        }
+        return diff(before, unplanned);
+    }
+
+    /**
+     * Closes the edge in the schedule's shortest-path tables and re-plans the open pickups of every
+     * train whose planned moves it changes. Moves already made over the edge stay as logged.
+     */
+    public synchronized ScheduleDiff closeEdge(Edge edge) {
+        Snapshot before = new Snapshot(true);
+        plan.setRouting(plan.routing().closeEdge(edge));
+        List<String> unplanned = new ArrayList<>();
+        List<Integer> released = new ArrayList<>();
+        for (int t = 0; t < trains.size(); t++) {
+            if (!moves(t).equals(before.moves.get(t))) {
+                released.addAll(release(t));
+                dropUnreachable(t, unplanned);
+            }
+        }
+        reinsert(released, unplanned);
+        return diff(before, unplanned);
+    }
+
+    /** Takes the packages the train has not picked up yet out of its route and returns them. */
+    private List<Integer> release(int t) {
+        List<Integer> released = new ArrayList<>();
+        int[] stops = plan.stops(t);
+        int[] carried = new int[stops.length];
+        int size = 0;
+        for (int stop : stops) {
+            if (RoutePlan.isPickup(stop)) {
+                released.add(RoutePlan.packageOf(stop));
+            } else if (!released.contains(RoutePlan.packageOf(stop))) {
+                carried[size++] = stop;
+            }
+        }
+        plan.setRoute(t, Arrays.copyOf(carried, size));
+        return released;
+    }
+
+    /** Packages on board whose destination the train can no longer reach stay on board, unplanned. */
+    private void dropUnreachable(int t, List<String> unplanned) {
+        int station = plan.startStation(t);
+        int[] stops = plan.stops(t);
+        int[] kept = new int[stops.length];
+        int size = 0;
+        for (int stop : stops) {
+            if (plan.leg(station, plan.station(stop)) >= RoutePlan.UNREACHABLE_LEG) {
+                unplanned.add(plan.pkg(RoutePlan.packageOf(stop)).getName());
+            } else {
+                kept[size++] = stop;
+                station = plan.station(stop);
+            }
+        }
+        plan.setRoute(t, Arrays.copyOf(kept, size));
+    }
+
+    private void reinsert(List<Integer> released, List<String> unplanned) {
+        for (int pkg : released) {
+            if (plan.insertCheapest(pkg) < 0) {
+                unplanned.add(plan.pkg(pkg).getName());
+            }
+        }
+    }
+
+    private ScheduleDiff diff(Snapshot before, List<String> unplanned) {
+        List<String> cancelled = new ArrayList<>();
+        List<String> planned = new ArrayList<>();
+        for (int t = 0; t < trains.size(); t++) {
+            if (!before.isChanged(t)) {
+                continue;
+            }
+            List<String> old = before.moves(t);
+            List<String> current = moves(t);
+            int same = 0;
+            while (same < old.size() && same < current.size() && old.get(same).equals(current.get(same))) {
+                same++;
+            }
+            cancelled.addAll(old.subList(same, old.size()));
+            planned.addAll(current.subList(same, current.size()));
+        }
+        return new ScheduleDiff(cancelled, planned, unplanned);
+    }
+
+    private List<String> moves(int t) {
+        return moves(t, plan.startStation(t), plan.startTime(t), plan.stops(t));
+    }
+
+    /** Log lines of the moves the train would make over the stops from the given start. */
+    private List<String> moves(int t, int station, int time, int[] stops) {
+        List<String> moves = new ArrayList<>();
+        RailNetwork network = plan.routing().getNetwork();
+        MoveLog planned = new ListMoveLog(train -> moves, network, train -> trains.get(train).getName(),
+                p -> plan.pkg(p).getName());
+        int[] pickups = Arrays.copyOf(pickedUp[t], pickedUpCount[t] + stops.length);
+        int[] deliveries = new int[stops.length];
+        int count = pickedUpCount[t];
+        for (int i = 0; i < stops.length; i++) {
+            int stop = stops[i];
+            int next = plan.station(stop);
+            if (next != station) {
+                TrainRoute route = plan.routing().route(station, next);
+                if (route == null) {
+                    break;
+                }
+                time = DeliveryPlanner.logMovement(planned, network, t, station, next, route, time, pickups, count,
+                        deliveries, plan.deliveriesAt(stops, i, deliveries));
+                count = 0;
+                station = next;
+            }
+            if (RoutePlan.isPickup(stop)) {
+                pickups[count++] = RoutePlan.packageOf(stop);
+            }
+        }
+        return moves;
+    }
+
+    private int indexOf(Train train) {
+        int t = trains.indexOf(train);
+        if (t < 0) {
+            throw new IllegalArgumentException("Unknown train " + train.getName());
+        }
+        return t;
+    }
+
+    /** Runs every open route to its end. */
+    public synchronized void drain() {
+        for (int t = 0; t < trains.size(); t++) {
+            advance(t, true);
+        }
+        log.flush();
+    }
+
+    public synchronized int getTime() {
+        return now;
+    }
+
+    /** Open stops of the train, as station names, in visiting order. */
+    public synchronized List<String> openStops(Train train) {
+        List<String> stations = new ArrayList<>();
+        for (int stop : plan.stops(trains.indexOf(train))) {
+            stations.add(plan.routing().stationName(plan.station(stop)));
+        }
+        return stations;
+    }
+
+    private void advance(int t, boolean all) {
+        Train train = trains.get(t);
+        int[] stops = plan.stops(t);
+        int station = plan.startStation(t);
+        int time = plan.startTime(t);
+        int load = loads[t];
+        int committed = 0;
+        Routing routing = plan.routing();
+        int[] deliveries = new int[stops.length];
+
+        // a train that is at its station before now has already left for the next stop
+        while (committed < stops.length && (all || time < now)) {
+            int stop = stops[committed];
+            int next = plan.station(stop);
+            if (next != station) {
+                time = DeliveryPlanner.logMovement(log, routing.getNetwork(), t, station, next,
+                        routing.route(station, next), time, pickedUp[t], pickedUpCount[t],
+                        deliveries, plan.deliveriesAt(stops, committed, deliveries));
+                pickedUpCount[t] = 0;
+                station = next;
+            }
+            Package pkg = plan.pkg(RoutePlan.packageOf(stop));
+            if (RoutePlan.isPickup(stop)) {
+                load += pkg.getWeightInKg();
+                if (pickedUpCount[t] == pickedUp[t].length) {
+                    pickedUp[t] = Arrays.copyOf(pickedUp[t], 2 * pickedUp[t].length);
+                }
+                pickedUp[t][pickedUpCount[t]++] = RoutePlan.packageOf(stop);
+            } else {
+                load -= pkg.getWeightInKg();
+            }
+            committed++;
+        }
+        if (committed > 0) {
+            loads[t] = load;
+            train.setCurrentStation(routing.stationName(station));
+            train.setCurrentTime(time);
+            train.setCurrentLoad(load);
+        }
+        // an idle train can set off no earlier than now
+        int start = committed == stops.length && !all ? Math.max(time, now) : time;
+        if (committed > 0 || start != plan.startTime(t)) {
+            plan.rebase(t, station, start, broken[t] ? OUT_OF_SERVICE : train.getCapacityInKg() - load,
+                    Arrays.copyOfRange(stops, committed, stops.length));
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("LiveSchedule{minute=%d, submitted=%d, rejected=%d, averageInsertion=%.3f ms}",
+                now, submitted, rejected, submitted == 0 ? 0 : insertionNanos / 1e6 / submitted);
+    }
+
+    /** The open routes before a disruption. */
+    private final class Snapshot {
+        final int[][] stops = new int[trains.size()][];
+        final int[] stations = new int[trains.size()];
+        final int[] times = new int[trains.size()];
+        // expanded up front when the paths between stops may change too
+        final List<List<String>> moves;
+
+        Snapshot(boolean withMoves) {
+            moves = withMoves ? new ArrayList<>() : null;
+            for (int t = 0; t < trains.size(); t++) {
+                stops[t] = plan.stops(t);
+                stations[t] = plan.startStation(t);
+                times[t] = plan.startTime(t);
+                if (withMoves) {
+                    moves.add(LiveSchedule.this.moves(t));
+                }
+            }
+        }
+
+        boolean isChanged(int t) {
+            // routes are replaced, never changed in place
+            return moves != null || stops[t] != plan.stops(t) || stations[t] != plan.startStation(t)
+                    || times[t] != plan.startTime(t);
+        }
+
+        List<String> moves(int t) {
+            return moves != null ? moves.get(t) : LiveSchedule.this.moves(t, stations[t], times[t], stops[t]);
+        }
+    }
+
+    private static final class Handover {
+        final int time;
+        final Package pkg;
+
+        Handover(int time, Package pkg) {
+            this.time = time;
+            this.pkg = pkg;
+        }
+    }
+}
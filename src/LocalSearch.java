@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Anytime improvement of a {@link RoutePlan}. Relocate and swap move packages between trains,
+ * 2-opt reverses part of a route and or-opt moves a run of up to three stops within it. A move is
+ * priced from the legs it changes, and only moves that shorten the makespan, or keep it and
+ * shorten the total travel time, are applied. The plan held is therefore always the best seen,
+ * and the search stops at a local optimum, when its time budget runs out or when cancelled.
+ */
+public class LocalSearch {
+    private static final int MAX_OR_OPT_SEGMENT = 3;
+    // check the clock only every so many priced moves
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final RoutePlan plan;
+    private final long deadline;
+    private final BooleanSupplier cancelled;
+    private final int[][] loads;
+
+    private long makespan;
+    private long totalTime;
+    private long evaluations;
+    private long appliedMoves;
+    private boolean stopped;
+
+    // pickup and delivery positions of the last priced insertion
+    private final int[] insertion = new int[2];
+
+    private LocalSearch(RoutePlan plan, long budgetMillis, BooleanSupplier cancelled) {
+        this.plan = plan;
+        this.deadline = System.nanoTime() + budgetMillis * 1_000_000;
+        this.cancelled = cancelled;
+        this.loads = new int[plan.trainCount()][];
+        for (int t = 0; t < loads.length; t++) {
+            loads[t] = plan.loads(plan.stops(t));
+        }
+        this.makespan = plan.makespan();
+        this.totalTime = plan.totalTravelTime();
+    }
+
+    /** Improves the plan in place for at most {@code budgetMillis} and returns it. */
+    public static LocalSearch improve(RoutePlan plan, long budgetMillis) {
+        return improve(plan, budgetMillis, () -> false);
+    }
+
+    /** As {@link #improve(RoutePlan, long)}, also stopping once {@code cancelled} returns true. */
+    public static LocalSearch improve(RoutePlan plan, long budgetMillis, BooleanSupplier cancelled) {
+        LocalSearch search = new LocalSearch(plan, budgetMillis, cancelled);
+        search.run();
+        return search;
+    }
+
+    public RoutePlan getPlan() {
+        return plan;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getAppliedMoves() {
+        return appliedMoves;
+    }
+
+    public boolean isTimeUp() {
+        return stopped;
+    }
+
+    private void run() {
+        if (makespan >= RoutePlan.UNREACHABLE_LEG) {
+            // an unreachable leg is already in the plan, no move can be compared against it
+            return;
+        }
+        boolean improved = true;
+        while (improved && !stopped) {
+            improved = relocatePass();
+            improved |= swapPass();
+            improved |= twoOptPass();
+            improved |= orOptPass();
+        }
+    }
+
+    private boolean relocatePass() {
+        boolean improved = false;
+        for (int a = 0; a < plan.trainCount() && !stopped; a++) {
+            int i = 0;
+            while (i < plan.stops(a).length && !stopped) {
+                if (relocate(a, plan.stops(a)[i])) {
+                    improved = true;
+                    i = 0;
+                } else {
+                    i++;
+                }
+            }
+        }
+        return improved;
+    }
+
+    private boolean relocate(int a, int stop) {
+        if (!RoutePlan.isPickup(stop)) {
+            return false;
+        }
+        int pkg = RoutePlan.packageOf(stop);
+        int[] reduced = without(plan.stops(a), pkg);
+        long reducedTime = plan.travelTime(a, reduced);
+        for (int b = 0; b < plan.trainCount(); b++) {
+            if (b == a || plan.weight(pkg) > plan.capacity(b)) {
+                continue;
+            }
+            int[] target = plan.stops(b);
+            long delta = plan.bestInsertion(b, target, loads[b], pkg, insertion);
+            if (delta < RoutePlan.UNREACHABLE_LEG && improves(a, reducedTime, b, plan.travelTime(b) + delta)) {
+                apply(a, reduced);
+                apply(b, RoutePlan.inserted(target, pkg, insertion[0], insertion[1]));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean swapPass() {
+        boolean improved = false;
+        for (int a = 0; a < plan.trainCount() && !stopped; a++) {
+            for (int b = a + 1; b < plan.trainCount() && !stopped; b++) {
+                improved |= swapBetween(a, b);
+            }
+        }
+        return improved;
+    }
+
+    private boolean swapBetween(int a, int b) {
+        int[] routeA = plan.stops(a);
+        int[] routeB = plan.stops(b);
+        for (int i = 0; i < routeA.length && !stopped; i++) {
+            if (!RoutePlan.isPickup(routeA[i])) {
+                continue;
+            }
+            int p = RoutePlan.packageOf(routeA[i]);
+            int[] reducedA = without(routeA, p);
+            int[] reducedLoadsA = plan.loads(reducedA);
+            for (int j = 0; j < routeB.length && !stopped; j++) {
+                if (!RoutePlan.isPickup(routeB[j])) {
+                    continue;
+                }
+                int q = RoutePlan.packageOf(routeB[j]);
+                int[] reducedB = without(routeB, q);
+
+                long deltaA = plan.bestInsertion(a, reducedA, reducedLoadsA, q, insertion);
+                if (deltaA >= RoutePlan.UNREACHABLE_LEG) {
+                    continue;
+                }
+                int qPickup = insertion[0];
+                int qDelivery = insertion[1];
+                long deltaB = plan.bestInsertion(b, reducedB, plan.loads(reducedB), p, insertion);
+                if (deltaB >= RoutePlan.UNREACHABLE_LEG
+                        || !improves(a, plan.travelTime(a, reducedA) + deltaA, b, plan.travelTime(b, reducedB) + deltaB)) {
+                    continue;
+                }
+                apply(a, RoutePlan.inserted(reducedA, q, qPickup, qDelivery));
+                apply(b, RoutePlan.inserted(reducedB, p, insertion[0], insertion[1]));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Reverses stops i..j of a route; on an undirected network only the two boundary legs change. */
+    private boolean twoOptPass() {
+        boolean improved = false;
+        for (int t = 0; t < plan.trainCount() && !stopped; t++) {
+            int[] route = plan.stops(t);
+            int[] position = positions(route);
+            boolean applied = false;
+            for (int i = 0; i < route.length - 1 && !applied && !stopped; i++) {
+                int before = i == 0 ? plan.startStation(t) : plan.station(route[i - 1]);
+                int first = plan.station(route[i]);
+                for (int j = i + 1; j < route.length; j++) {
+                    // once the segment holds both ends of a package, every longer one does too
+                    int partner = position[partnerIndex(route[j])];
+                    if (partner >= i && partner < j) {
+                        break;
+                    }
+                    int last = plan.station(route[j]);
+                    long delta = plan.leg(before, last) - plan.leg(before, first);
+                    if (j + 1 < route.length) {
+                        int after = plan.station(route[j + 1]);
+                        delta += plan.leg(first, after) - plan.leg(last, after);
+                    }
+                    if (delta < 0 && improves(t, plan.travelTime(t) + delta, -1, 0)) {
+                        int[] candidate = route.clone();
+                        reverse(candidate, i, j);
+                        if (plan.fits(t, candidate)) {
+                            apply(t, candidate);
+                            applied = true;
+                            improved = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (applied) {
+                t--;
+            }
+        }
+        return improved;
+    }
+
+    /** Moves the run of stops i..i+len-1 to sit before stop k, keeping its order. */
+    private boolean orOptPass() {
+        boolean improved = false;
+        for (int t = 0; t < plan.trainCount() && !stopped; t++) {
+            int[] route = plan.stops(t);
+            int n = route.length;
+            boolean applied = false;
+            for (int len = 1; len <= MAX_OR_OPT_SEGMENT && !applied; len++) {
+                for (int i = 0; i + len <= n && !applied && !stopped; i++) {
+                    int end = i + len - 1;
+                    int before = i == 0 ? plan.startStation(t) : plan.station(route[i - 1]);
+                    int first = plan.station(route[i]);
+                    int last = plan.station(route[end]);
+                    long removal = -plan.leg(before, first);
+                    if (end + 1 < n) {
+                        int after = plan.station(route[end + 1]);
+                        removal += plan.leg(before, after) - plan.leg(last, after);
+                    }
+                    for (int k = 0; k <= n && !applied; k++) {
+                        if (k >= i && k <= end + 1) {
+                            continue;
+                        }
+                        int u = k == 0 ? plan.startStation(t) : plan.station(route[k - 1]);
+                        long delta = removal + plan.leg(u, first);
+                        if (k < n) {
+                            int v = plan.station(route[k]);
+                            delta += plan.leg(last, v) - plan.leg(u, v);
+                        }
+                        if (delta < 0 && improves(t, plan.travelTime(t) + delta, -1, 0)) {
+                            int[] candidate = moved(route, i, len, k);
+                            if (plan.fits(t, candidate)) {
+                                apply(t, candidate);
+                                applied = true;
+                                improved = true;
+                            }
+                        }
+                    }
+                }
+            }
+            if (applied) {
+                t--;
+            }
+        }
+        return improved;
+    }
+
+    /** Whether giving train a the travel time timeA (and b timeB, if b &gt;= 0) beats the current plan. */
+    private boolean improves(int a, long timeA, int b, long timeB) {
+        tick();
+        long newMakespan = Math.max(plan.startTime(a) + timeA, b < 0 ? 0 : plan.startTime(b) + timeB);
+        long newTotal = totalTime - plan.travelTime(a) + timeA - (b < 0 ? 0 : plan.travelTime(b) - timeB);
+        if (newMakespan > makespan || (newMakespan == makespan && newTotal >= totalTime)) {
+            return false;
+        }
+        for (int t = 0; t < plan.trainCount(); t++) {
+            if (t != a && t != b) {
+                newMakespan = Math.max(newMakespan, plan.finishTime(t));
+            }
+        }
+        return newMakespan < makespan || (newMakespan == makespan && newTotal < totalTime);
+    }
+
+    private void apply(int train, int[] stops) {
+        plan.setRoute(train, stops);
+        loads[train] = plan.loads(stops);
+        makespan = plan.makespan();
+        totalTime = plan.totalTravelTime();
+        appliedMoves++;
+    }
+
+    private void tick() {
+        if (++evaluations % CLOCK_INTERVAL == 0 && (System.nanoTime() > deadline || cancelled.getAsBoolean())) {
+            stopped = true;
+        }
+    }
+
+    private static int[] without(int[] route, int pkg) {
+        int[] reduced = new int[route.length - 2];
+        int size = 0;
+        for (int stop : route) {
+            if (RoutePlan.packageOf(stop) != pkg) {
+                reduced[size++] = stop;
+            }
+        }
+        return reduced;
+    }
+
+    private static int[] moved(int[] route, int i, int len, int k) {
+        int[] result = new int[route.length];
+        int size = 0;
+        for (int m = 0; m <= route.length; m++) {
+            if (m == k) {
+                System.arraycopy(route, i, result, size, len);
+                size += len;
+            }
+            if (m < route.length && (m < i || m >= i + len)) {
+                result[size++] = route[m];
+            }
+        }
+        return result;
+    }
+
+    private static void reverse(int[] route, int i, int j) {
+        for (; i < j; i++, j--) {
+            int stop = route[i];
+            route[i] = route[j];
+            route[j] = stop;
+        }
+    }
+
+    /** Position of every stop in the route, indexed by stop, -1 for stops not on it. */
+    private static int[] positions(int[] route) {
+        int max = 0;
+        for (int stop : route) {
+            max = Math.max(max, stop);
+        }
+        int[] positions = new int[max + 2];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < route.length; i++) {
+            positions[route[i]] = i;
+        }
+        return positions;
+    }
+
+    private static int partnerIndex(int stop) {
+        return stop ^ 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LocalSearch{makespan=%d, totalTravel=%d, moves=%d, evaluations=%d, stopped=%b}",
+                makespan, totalTime, appliedMoves, evaluations, stopped);
+    }
+}
@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -5,19 +8,29 @@ import java.util.stream.Collectors;
 // click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
 public class Main {
 
+    private static final int LOAD_THREADS =
+            Integer.getInteger("routeplanner.load.threads", Runtime.getRuntime().availableProcessors());
+
     private static final Scanner sc = new Scanner(System.in);
 
-    public static List<Package> deliveries = new ArrayList<>();
-    public static List<Train> trains = new ArrayList<>();
+    // stations and edges entered interactively
+    private static final RailNetwork.Builder network = new RailNetwork.Builder();
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(Arrays.asList(args).subList(1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(args.length > 1 ? args[1] : "8080");
+            return;
+        }
 
         System.out.println("Pls enter the no of stations: ");
         int noStations= inputInt();
         for (int i=0; i<noStations; i++) {
             System.out.println(String.format("Pls enter the name of station %d: ",i+1));
-            String readStation = readStation(ComputePath.stations);
-            ComputePath.graph.putIfAbsent(readStation,new ArrayList<>());
+            network.addStation(readStation());
         }
 
         getNoStations();
@@ -25,36 +38,76 @@ public class Main {
         int noEdges = inputInt();
         for (int i=0; i<noEdges; i++) {
             System.out.println(String.format("Pls enter the edge no %d: ",i+1));
-            readEdge(ComputePath.stations);
+            readEdge();
         }
 
-        ComputePath.computeAllShortestPath();
+        Routing routing = ComputePath.computeAllShortestPath(network.build());
 
         System.out.print("Pls enter the no of deliveries: ");
         int noDeliveries = inputInt();
+        List<Package> deliveries = new ArrayList<>();
         for (int i = 0; i < noDeliveries; i++) {
             System.out.println(String.format("Pls enter the delivery no %d: ",i+1));
-            readDelivery(ComputePath.stations);
+            deliveries.add(readDelivery());
         }
 
         System.out.print("Pls enter the no of trains: ");
         int noTrains = inputInt();
+        List<Train> trains = new ArrayList<>();
         for (int i = 0; i < noTrains; i++) {
             System.out.println(String.format("Pls enter the train no %d: ",i+1));
-            readTrain(ComputePath.stations);
+            trains.add(readTrain());
+        }
+
+        DeliveryPlanner.assignPackage(routing, trains, deliveries);
+    }
+
+    /** Serves plan requests on 127.0.0.1 until the JVM is stopped. */
+    private static void runServer(String port) {
+        PlanningServer server;
+        try {
+            server = PlanningServer.start(Integer.parseInt(port));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a port: " + port, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the planning server on port " + port, e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Planning server on http://127.0.0.1:" + server.getPort() + " (POST /plan, GET /stats)");
+    }
+
+    /** Plans every instance file given, or standard input when there is none or it is "-". */
+    private static void runBatch(List<String> files) {
+        List<InstanceLoader.Instance> instances;
+        try {
+            if (files.isEmpty() || files.equals(List.of("-"))) {
+                instances = List.of(InstanceLoader.load(System.in, "<stdin>"));
+            } else {
+                instances = InstanceLoader.loadAll(files.stream().map(Path::of).collect(Collectors.toList()), LOAD_THREADS);
+            }
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
         }
 
-        DeliveryPlanner.assignPackage(trains, deliveries);
+        for (InstanceLoader.Instance instance : instances) {
+            if (instances.size() > 1) {
+                System.out.println("=== " + instance.getSource() + " ===");
+            }
+            Routing routing = ComputePath.compute(instance.getNetwork().build());
+            DeliveryPlanner.assignPackage(routing, instance.getTrains(), instance.getPackages());
+        }
     }
 
     private static void getNoStations() {
         System.out.print("Stations: [");
-        System.out.print(ComputePath.stations.stream().map(Object::toString).collect(Collectors.joining(", ")));
+        System.out.print(network.getStations().stream().map(Object::toString).collect(Collectors.joining(", ")));
         System.out.print("]");
         System.out.print("\n");
     }
 
-    private static void readTrain(Set<String> stations) {
+    private static Train readTrain() {
         while (true) {
             String line = sc.nextLine().trim();
             String[] parts = line.split(",");
@@ -64,7 +117,7 @@ public class Main {
             }
             String currentStation = parts[2].trim();
 
-            if (!stations.contains(currentStation)) {
+            if (!network.contains(currentStation)) {
                 getNoStations();
                 System.out.print(String.format("The station %s doesnt exist.Please re-enter the entire train again: ",currentStation));
                 continue;
@@ -79,12 +132,11 @@ public class Main {
                 System.out.print("The capacity value is not valid.Please re-enter the entire train again: ");
                 continue;
             }
-            trains.add(new Train(parts[0],Integer.parseInt(parts[1].trim()),currentStation));
-            break;
+            return new Train(parts[0],Integer.parseInt(parts[1].trim()),currentStation);
         }
     }
 
-    private static void readDelivery(Set<String> stations) {
+    private static Package readDelivery() {
         while (true) {
             String line = sc.nextLine().trim();
             String[] parts = line.split(",");
@@ -95,12 +147,12 @@ public class Main {
             String startStation = parts[2].trim();
             String endStation = parts[3].trim();
 
-            if (!stations.contains(startStation)) {
+            if (!network.contains(startStation)) {
                 getNoStations();
                 System.out.print(String.format("The station %s doesnt exist.Please re-enter the entire delivery again: ",startStation));
                 continue;
             }
-            if (!stations.contains(endStation)) {
+            if (!network.contains(endStation)) {
                 getNoStations();
                 System.out.print(String.format("The station %s doesnt exist.Please re-enter the entire delivery again: ",endStation));
                 continue;
@@ -115,12 +167,11 @@ public class Main {
                 System.out.print("The weight value is not valid.Please re-enter the entire delivery again: ");
                 continue;
             }
-            deliveries.add(new Package(parts[0],Integer.parseInt(parts[1].trim()),new Node(startStation),new Node(endStation)));
-            break;
+            return new Package(parts[0],Integer.parseInt(parts[1].trim()),new Node(startStation),new Node(endStation));
         }
     }
 
-    private static void readEdge(Set<String> stations) {
+    private static void readEdge() {
         while (true) {
             String line = sc.nextLine().trim();
             String[] parts = line.split(",");
@@ -131,12 +182,12 @@ public class Main {
             String startStation = parts[1].trim();
             String endStation = parts[2].trim();
 
-            if (!stations.contains(startStation)) {
+            if (!network.contains(startStation)) {
                 getNoStations();
                 System.out.print(String.format("The station %s doesnt exist.Please re-enter the entire edge again:  ",startStation));
                 continue;
             }
-            if (!stations.contains(endStation)) {
+            if (!network.contains(endStation)) {
                 getNoStations();
                 System.out.print(String.format("The station %s doesnt exist.Please re-enter the entire edge again:  ",endStation));
                 continue;
@@ -151,22 +202,20 @@ public class Main {
                 System.out.print("The duration value is not valid.Please re-enter the entire edge again:  ");
                 continue;
             }
-            ComputePath.graph.get(startStation).add(new Edge(parts[0],new Node(startStation),new Node(endStation),Integer.parseInt(parts[3].trim())));
-            ComputePath.graph.get(endStation).add(new Edge(parts[0],new Node(endStation),new Node(startStation),Integer.parseInt(parts[3].trim())));
+            network.addEdge(startStation,endStation,Integer.parseInt(parts[3].trim()));
             break;
         }
     }
 
-    private static String readStation(Set<String> stations) {
+    private static String readStation() {
         while (true) {
             String station = sc.nextLine().trim();
             if (station.isEmpty()) {
                 System.out.print("Station name is empty.Please enter a name: ");
-            } else if (stations.contains(station)) {
+            } else if (network.contains(station)) {
                 getNoStations();
                 System.out.print("Station already exists.Please enter a different name: ");
             } else {
-                stations.add(station);
                 return station;
             }
         }
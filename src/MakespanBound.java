@@ -0,0 +1,84 @@
+/**
+ * Lower bounds on the makespan of any plan that delivers every servable package of a
+ * {@link RoutePlan}, from shortest-path times alone:
+ * <ul>
+ * <li>trains: no train finishes before its current time;</li>
+ * <li>reach: every package needs its nearest capable train to reach the pickup and then
+ * ride to the destination;</li>
+ * <li>capacity: moving each package's weight over its ride takes weight times minutes of
+ * capacity, and the fleet only offers so much of it per minute.</li>
+ * </ul>
+ */
+public final class MakespanBound {
+    private final long trains;
+    private final long reach;
+    private final long capacity;
+    private final int servablePackages;
+
+    private MakespanBound(long trains, long reach, long capacity, int servablePackages) {
+        this.trains = trains;
+        this.reach = reach;
+        this.capacity = capacity;
+        this.servablePackages = servablePackages;
+    }
+
+    public static MakespanBound of(RoutePlan plan) {
+        long trains = 0;
+        long fleetCapacity = 0;
+        long capacityTime = 0;
+        for (int t = 0; t < plan.trainCount(); t++) {
+            trains = Math.max(trains, plan.startTime(t));
+            fleetCapacity += Math.max(0, plan.capacity(t));
+            capacityTime += (long) Math.max(0, plan.capacity(t)) * plan.startTime(t);
+        }
+
+        long reach = 0;
+        long load = 0;
+        int servable = 0;
+        for (int p = 0; p < plan.packageCount(); p++) {
+            if (!plan.isServable(p)) {
+                continue;
+            }
+            servable++;
+            int pickup = plan.station(RoutePlan.pickupStop(p));
+            long ride = plan.leg(pickup, plan.station(RoutePlan.deliveryStop(p)));
+            long earliestPickup = RoutePlan.UNREACHABLE_LEG;
+            for (int t = 0; t < plan.trainCount(); t++) {
+                if (plan.weight(p) <= plan.capacity(t)) {
+                    earliestPickup = Math.min(earliestPickup, plan.startTime(t) + plan.leg(plan.startStation(t), pickup));
+                }
+            }
+            reach = Math.max(reach, earliestPickup + ride);
+            load += plan.weight(p) * ride;
+        }
+
+        // sum of capacity * (makespan - start) over trains must cover the load, rounded up
+        long capacity = fleetCapacity == 0 ? 0 : (load + capacityTime + fleetCapacity - 1) / fleetCapacity;
+        return new MakespanBound(trains, reach, capacity, servable);
+    }
+
+    public long getValue() {
+        return Math.max(trains, Math.max(reach, capacity));
+    }
+
+    /** Whether the plan delivers every servable package at the bound, so no search can improve on it. */
+    public boolean isReachedBy(RoutePlan plan) {
+        return plan.plannedPackages() >= servablePackages && plan.makespan() <= getValue();
+    }
+
+    public int getServablePackages() {
+        return servablePackages;
+    }
+
+    /** How far the makespan is above the bound, as a percentage of the bound. */
+    public double gap(long makespan) {
+        long value = getValue();
+        return value == 0 ? 0 : 100.0 * (makespan - value) / value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MakespanBound{value=%d, trains=%d, reach=%d, capacity=%d}",
+                getValue(), trains, reach, capacity);
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Receives a plan's moves as they are made, one record per hop between adjacent stations, so a
+ * schedule can be streamed out instead of being kept as text.
+ */
+public interface MoveLog {
+    /**
+     * Train {@code train} leaves station {@code from} at minute {@code time} for the adjacent
+     * station {@code to}, having picked up the packages {@code pickups[0..pickupCount)} at
+     * {@code from}. {@code arrives} marks the hop that reaches the stop the train was heading to,
+     * where it drops off {@code deliveries[0..deliveryCount)}; other hops deliver nothing.
+     */
+    void move(int time, int train, int from, int to, int[] pickups, int pickupCount, int[] deliveries,
+              int deliveryCount, boolean arrives);
+
+    default void flush() {
+    }
+
+    /** Sends every move to both logs. */
+    static MoveLog both(MoveLog first, MoveLog second) {
+        return new MoveLog() {
+            @Override
+            public void move(int time, int train, int from, int to, int[] pickups, int pickupCount,
+                             int[] deliveries, int deliveryCount, boolean arrives) {
+                first.move(time, train, from, to, pickups, pickupCount, deliveries, deliveryCount, arrives);
+                second.move(time, train, from, to, pickups, pickupCount, deliveries, deliveryCount, arrives);
+            }
+
+            @Override
+            public void flush() {
+                first.flush();
+                second.flush();
+            }
+        };
+    }
+}
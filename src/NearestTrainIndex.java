@@ -0,0 +1,59 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Trains ordered by shortest-path time from their station to a package origin, so the auction
+ * can take bids from the nearest few trains instead of the whole fleet. The order for an origin
+ * is built on first use from the route tables; train positions must not change meanwhile.
+ */
+public class NearestTrainIndex {
+    private final Routing routing;
+    private final int[] trainStations;
+    private final int[][] byOrigin;
+
+    public NearestTrainIndex(Routing routing, List<Train> trains) {
+        this.routing = routing;
+        this.trainStations = new int[trains.size()];
+        for (int t = 0; t < trainStations.length; t++) {
+            trainStations[t] = routing.stationId(trains.get(t).getCurrentStation());
+        }
+        this.byOrigin = new int[routing.getNetwork().size()][];
+    }
+
+    /**
+     * Up to k trains that the filter accepts, taken nearest to the origin first and returned in
+     * train order, so ties are broken the same way as over the whole fleet.
+     */
+    public int[] nearest(int origin, int k, IntPredicate accepts) {
+        int[] order = order(origin);
+        int[] chosen = new int[Math.min(k, order.length)];
+        int size = 0;
+        for (int i = 0; i < order.length && size < chosen.length; i++) {
+            if (accepts.test(order[i])) {
+                chosen[size++] = order[i];
+            }
+        }
+        chosen = size == chosen.length ? chosen : Arrays.copyOf(chosen, size);
+        Arrays.sort(chosen);
+        return chosen;
+    }
+
+    private int[] order(int origin) {
+        int[] order = byOrigin[origin];
+        if (order == null) {
+            // travel time in the high bits, train index in the low bits; unreachable trains sort last
+            long[] keys = new long[trainStations.length];
+            for (int t = 0; t < keys.length; t++) {
+                keys[t] = ((long) routing.time(trainStations[t], origin) << 32) | t;
+            }
+            Arrays.sort(keys);
+            order = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                order[i] = (int) keys[i];
+            }
+            byOrigin[origin] = order;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Keeps a fully built {@link TrainRoute} for every reachable station pair.
+ * Fastest to read, but memory grows with V^2 times the path length.
+ */
+public class PathRouteTable implements TreeRouteTable {
+    private final TrainRoute[][] routes;
+    private final double[] averageTimes;
+
+    public PathRouteTable(int stations) {
+        routes = new TrainRoute[stations][];
+        averageTimes = new double[stations];
+    }
+
+    private PathRouteTable(PathRouteTable other) {
+        // rows are replaced as a whole when stored, never changed, so the copy can share them
+        routes = other.routes.clone();
+        averageTimes = other.averageTimes.clone();
+    }
+
+    @Override
+    public int time(int from, int to) {
+        TrainRoute route = routes[from][to];
+        return route == null ? ComputePath.UNREACHABLE : route.getTime();
+    }
+
+    @Override
+    public int[] path(int from, int to) {
+        TrainRoute route = routes[from][to];
+        return route == null ? null : route.getShortestPath();
+    }
+
+    @Override
+    public double averageTime(int from) {
+        return averageTimes[from];
+    }
+
+    @Override
+    public void store(ShortestPathTree tree) {
+        int[] distances = tree.getDistances();
+        TrainRoute[] row = new TrainRoute[distances.length];
+        for (int destination = 0; destination < distances.length; destination++) {
+            if (distances[destination] != ComputePath.UNREACHABLE) {
+                row[destination] = new TrainRoute(distances[destination], tree.pathTo(destination));
+            }
+        }
+        routes[tree.getSource()] = row;
+        averageTimes[tree.getSource()] = tree.averageTime();
+    }
+
+    /** Rebuilt from the stored paths: the predecessor of a station is the second-last stop on its path. */
+    @Override
+    public ShortestPathTree tree(int source) {
+        TrainRoute[] row = routes[source];
+        int[] distances = new int[row.length];
+        int[] previous = new int[row.length];
+        for (int destination = 0; destination < row.length; destination++) {
+            TrainRoute route = row[destination];
+            int[] path = route == null ? null : route.getShortestPath();
+            distances[destination] = route == null ? ComputePath.UNREACHABLE : route.getTime();
+            previous[destination] = path == null || path.length < 2 ? RailNetwork.NO_STATION : path[path.length - 2];
+        }
+        return new ShortestPathTree(source, distances, previous);
+    }
+
+
+    @Override
+    public TreeRouteTable copyFor(RailNetwork network) {
+        return new PathRouteTable(this);
+    }
+}
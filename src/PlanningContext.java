@@ -0,0 +1,39 @@
+import java.util.List;
+
+/**
+ * One planning run: the routing it reads and the trains and packages it plans. The routing is
+ * shared and never changed by planning; the trains, which a run moves as it executes its plan,
+ * and the caches of its auctions belong to the run alone. Runs on different contexts can
+ * therefore go in parallel without locks, on one routing or on several.
+ */
+public final class PlanningContext {
+    private final Routing routing;
+    private final List<Train> trains;
+    private final List<Package> packages;
+
+    public PlanningContext(Routing routing, List<Train> trains, List<Package> packages) {
+        this.routing = routing;
+        this.trains = trains;
+        this.packages = packages;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public List<Train> getTrains() {
+        return trains;
+    }
+
+    public List<Package> getPackages() {
+        return packages;
+    }
+
+    int stationOf(Node node) {
+        return routing.stationId(node.getName());
+    }
+
+    int stationOf(Train train) {
+        return routing.stationId(train.getCurrentStation());
+    }
+}
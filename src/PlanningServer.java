@@ -0,0 +1,231 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plans over HTTP on the loopback interface, so a job pays neither JVM start-up and JIT warm-up
+ * nor, for a network seen before, the shortest-path precomputation. {@code POST /plan} takes one
+ * instance in the README's input format and answers with the plan as the batch mode prints it;
+ * {@code GET /stats} reports throughput, latency percentiles and routing cache use as JSON.
+ * Requests run on virtual threads when the JVM has them, otherwise on a fixed pool.
+ */
+public class PlanningServer {
+    private static final int THREADS =
+            Integer.getInteger("routeplanner.server.threads", Runtime.getRuntime().availableProcessors());
+    // routings of this many networks stay loaded, the least recently planned one is dropped first
+    private static final int CACHED_NETWORKS = Integer.getInteger("routeplanner.server.networks", 16);
+    // latency percentiles are taken over this many most recent requests
+    private static final int LATENCY_WINDOW = 4096;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String executorName;
+    private final RoutingCache routings = new RoutingCache(CACHED_NETWORKS);
+    private final Stats stats = new Stats();
+
+    private PlanningServer(HttpServer server, ExecutorService executor, String executorName) {
+        this.server = server;
+        this.executor = executor;
+        this.executorName = executorName;
+    }
+
+    /** Starts serving on 127.0.0.1; port 0 picks a free one, see {@link #getPort()}. */
+    public static PlanningServer start(int port) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService executor;
+        String executorName;
+        try {
+            // looked up by name so the build stays on Java 17, which has no virtual threads
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            executorName = "virtual threads";
+        } catch (ReflectiveOperationException e) {
+            executor = Executors.newFixedThreadPool(THREADS);
+            executorName = "pool of " + THREADS + " platform threads";
+        }
+        PlanningServer planningServer = new PlanningServer(http, executor, executorName);
+        http.createContext("/plan", planningServer::plan);
+        http.createContext("/stats", planningServer::stats);
+        http.setExecutor(executor);
+        http.start();
+        return planningServer;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stops accepting requests and waits up to a second for running ones. */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void plan(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "text/plain", "POST an instance to /plan\n");
+            return;
+        }
+        long start = System.nanoTime();
+        stats.started();
+        int status = 500;
+        String body;
+        try {
+            InstanceLoader.Instance instance = InstanceLoader.load(exchange.getRequestBody(), "request");
+            Routing routing = routings.get(instance.getNetwork().build());
+            StringWriter out = new StringWriter();
+            DeliveryPlanner.assignPackage(new PlanningContext(routing, instance.getTrains(), instance.getPackages()), out);
+            body = out.toString();
+            status = 200;
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            body = e.getMessage() + "\n";
+            status = 400;
+        } catch (RuntimeException e) {
+            body = "Planning failed: " + e + "\n";
+        } finally {
+            stats.finished(System.nanoTime() - start, status == 200);
+        }
+        respond(exchange, status, "text/plain", body);
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, "text/plain", "GET /stats\n");
+            return;
+        }
+        respond(exchange, 200, "application/json", stats.toJson(routings, executorName) + "\n");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Routings by network checksum. The first request for a network computes its routing while
+     * later ones for the same network wait for it instead of computing it again.
+     */
+    private static final class RoutingCache {
+        private final int capacity;
+        private final Map<Long, FutureTask<Routing>> routings;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong precomputeNanos = new AtomicLong();
+
+        RoutingCache(int capacity) {
+            this.capacity = Math.max(1, capacity);
+            this.routings = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, FutureTask<Routing>> eldest) {
+                    return size() > RoutingCache.this.capacity;
+                }
+            };
+        }
+
+        Routing get(RailNetwork network) {
+            long key = network.checksum();
+            FutureTask<Routing> task;
+            boolean computes = false;
+            synchronized (this) {
+                task = routings.get(key);
+                if (task == null) {
+                    task = new FutureTask<>(() -> ComputePath.compute(network));
+                    routings.put(key, task);
+                    computes = true;
+                }
+            }
+            if (computes) {
+                misses.incrementAndGet();
+                long start = System.nanoTime();
+                task.run();
+                precomputeNanos.addAndGet(System.nanoTime() - start);
+            } else {
+                hits.incrementAndGet();
+            }
+            try {
+                Routing routing = task.get();
+                // another network with the same checksum is routed on its own
+                return routing.getNetwork().hasSameLayout(network) ? routing : ComputePath.compute(network);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for shortest paths", e);
+            } catch (ExecutionException e) {
+                synchronized (this) {
+                    routings.remove(key, task);
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Shortest path computation failed", e.getCause());
+            }
+        }
+
+        synchronized int size() {
+            return routings.size();
+        }
+    }
+
+    /** Request counters and a window of recent latencies. */
+    private static final class Stats {
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private long requests;
+        private long failed;
+        private long totalNanos;
+        private long maxNanos;
+
+        void started() {
+            inFlight.incrementAndGet();
+        }
+
+        synchronized void finished(long nanos, boolean succeeded) {
+            inFlight.decrementAndGet();
+            latencies[(int) (requests % LATENCY_WINDOW)] = nanos;
+            requests++;
+            failed += succeeded ? 0 : 1;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        synchronized String toJson(RoutingCache cache, String executor) {
+            double uptime = (System.nanoTime() - startNanos) / 1e9;
+            long[] recent = Arrays.copyOf(latencies, (int) Math.min(requests, LATENCY_WINDOW));
+            Arrays.sort(recent);
+            // JSON numbers take a decimal point whatever the default locale
+            return String.format(Locale.ROOT, "{\"uptimeSeconds\": %.1f, \"requests\": %d, \"failed\": %d, \"inFlight\": %d, "
+                            + "\"throughputPerSecond\": %.2f, \"latencyMillis\": {\"mean\": %.2f, \"p50\": %.2f, "
+                            + "\"p90\": %.2f, \"p99\": %.2f, \"max\": %.2f}, \"routingCache\": {\"networks\": %d, "
+                            + "\"hits\": %d, \"misses\": %d, \"precomputeMillis\": %.1f}, \"executor\": \"%s\"}",
+                    uptime, requests, failed, inFlight.get(), uptime == 0 ? 0 : requests / uptime,
+                    requests == 0 ? 0 : totalNanos / 1e6 / requests, percentile(recent, 0.50),
+                    percentile(recent, 0.90), percentile(recent, 0.99), maxNanos / 1e6, cache.size(),
+                    cache.hits.get(), cache.misses.get(), cache.precomputeNanos.get() / 1e6, executor);
+        }
+
+        private static double percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
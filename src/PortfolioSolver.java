@@ -0,0 +1,238 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs differently configured planners side by side and keeps the best plan any of them finds.
+ * Every strategy builds a plan and improves it with {@link LocalSearch}; the best plan so far
+ * is a single lock-free record that all workers read to give up on plans that are losing badly.
+ */
+public class PortfolioSolver {
+    // a worker whose plan is this much longer than the best known one abandons it
+    private static final double LOSING_RATIO = 1.25;
+
+    enum Strategy {
+        AUCTION, AUCTION_NO_FUTURE_COST, AUCTION_HIGH_UTILIZATION, GREEDY_INSERTION, RANDOM_RESTARTS
+    }
+
+    private final PlanningContext context;
+    private final List<Package> packages;
+    private final long deadline;
+    private final MakespanBound bound;
+    private final AtomicReference<Incumbent> best = new AtomicReference<>();
+    private final AtomicInteger plansBuilt = new AtomicInteger();
+    private final AtomicInteger plansAbandoned = new AtomicInteger();
+
+    private PortfolioSolver(PlanningContext context, long timeLimitMillis) {
+        this.context = context;
+        this.packages = context.getPackages();
+        this.deadline = System.nanoTime() + timeLimitMillis * 1_000_000;
+        this.bound = MakespanBound.of(new RoutePlan(context));
+    }
+
+    /** Best plan found by the portfolio on {@code threads} threads within the time limit. */
+    public static PortfolioSolver solve(PlanningContext context, int threads, long timeLimitMillis) {
+        PortfolioSolver solver = new PortfolioSolver(context, timeLimitMillis);
+        solver.run(Math.max(1, threads));
+        return solver;
+    }
+
+    public RoutePlan getPlan() {
+        return best.get().plan;
+    }
+
+    public Strategy getWinner() {
+        return best.get().strategy;
+    }
+
+    private void run(int threads) {
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (Strategy strategy : Strategy.values()) {
+            if (strategy != Strategy.RANDOM_RESTARTS) {
+                workers.add(() -> runOnce(strategy));
+            }
+        }
+        // threads beyond the fixed strategies all restart from different random orders
+        int restartWorkers = Math.max(1, threads - workers.size());
+        for (int seed = 0; seed < restartWorkers; seed++) {
+            Random random = new Random(seed);
+            workers.add(() -> runRestarts(random));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> worker : pool.invokeAll(workers)) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Portfolio solver was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Portfolio strategy failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (best.get() == null) {
+            // the time limit ran out before any strategy started; planning nothing keeps to it
+            offer(new Incumbent(new RoutePlan(context), Strategy.AUCTION));
+        }
+    }
+
+    private Void runOnce(Strategy strategy) {
+        if (timeLeft() <= 0 || isSolved()) {
+            return null;
+        }
+        RoutePlan plan;
+        switch (strategy) {
+            case AUCTION:
+                plan = auctionPlan(DeliveryPlanner.AuctionWeights.DEFAULT);
+                break;
+            case AUCTION_NO_FUTURE_COST:
+                plan = auctionPlan(new DeliveryPlanner.AuctionWeights(0, 0.2));
+                break;
+            case AUCTION_HIGH_UTILIZATION:
+                plan = auctionPlan(new DeliveryPlanner.AuctionWeights(0.3, 1.0));
+                break;
+            default:
+                plan = insertionPlan(identityOrder(), false);
+                break;
+        }
+        improveAndOffer(plan, strategy);
+        return null;
+    }
+
+    /**
+     * The auction bids on this worker's thread only, since the portfolio already keeps every thread
+     * busy, and ends early with what it has once the time is up or the bound is met.
+     */
+    private RoutePlan auctionPlan(DeliveryPlanner.AuctionWeights weights) {
+        return DeliveryPlanner.auctionPlan(context, weights, 1, () -> timeLeft() <= 0 || isSolved());
+    }
+
+    private Void runRestarts(Random random) {
+        int[] order = identityOrder();
+        while (timeLeft() > 0 && !isSolved()) {
+            shuffle(order, random);
+            RoutePlan plan = insertionPlan(order, true);
+            if (plan != null) {
+                improveAndOffer(plan, Strategy.RANDOM_RESTARTS);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cheapest insertion in the given package order, or null when abandoned as losing half way.
+     * When the time runs out the packages inserted so far are the plan.
+     */
+    private RoutePlan insertionPlan(int[] order, boolean abandonWhenLosing) {
+        RoutePlan plan = new RoutePlan(context);
+        for (int pkg : order) {
+            if (timeLeft() <= 0) {
+                break;
+            }
+            plan.insertCheapest(pkg);
+            // inserting only ever lengthens the plan, so a losing partial plan stays losing
+            if (abandonWhenLosing && isLosing(plan, bound.getServablePackages())) {
+                plansAbandoned.incrementAndGet();
+                return null;
+            }
+        }
+        return plan;
+    }
+
+    private void improveAndOffer(RoutePlan plan, Strategy strategy) {
+        plansBuilt.incrementAndGet();
+        LocalSearch.improve(plan, timeLeft(),
+                () -> isLosing(plan, plan.plannedPackages()) || isSolved() || bound.isReachedBy(plan));
+        if (isLosing(plan, plan.plannedPackages())) {
+            plansAbandoned.incrementAndGet();
+            return;
+        }
+        offer(new Incumbent(plan, strategy));
+    }
+
+    /** The best plan meets the lower bound, so every worker can stop. */
+    private boolean isSolved() {
+        Incumbent incumbent = best.get();
+        return incumbent != null && bound.isReachedBy(incumbent.plan);
+    }
+
+    /**
+     * Whether the plan, which can end up planning at most {@code plannable} packages, is far behind
+     * a best plan that leaves no more packages unplanned than it will.
+     */
+    private boolean isLosing(RoutePlan plan, int plannable) {
+        Incumbent incumbent = best.get();
+        return incumbent != null && incumbent.planned >= plannable
+                && plan.makespan() > incumbent.makespan * LOSING_RATIO;
+    }
+
+    private void offer(Incumbent candidate) {
+        Incumbent current;
+        do {
+            current = best.get();
+            if (current != null && !candidate.beats(current)) {
+                return;
+            }
+        } while (!best.compareAndSet(current, candidate));
+    }
+
+    private long timeLeft() {
+        return (deadline - System.nanoTime()) / 1_000_000;
+    }
+
+    private int[] identityOrder() {
+        int[] order = new int[packages.size()];
+        for (int p = 0; p < order.length; p++) {
+            order[p] = p;
+        }
+        return order;
+    }
+
+    private static void shuffle(int[] order, Random random) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    @Override
+    public String toString() {
+        Incumbent incumbent = best.get();
+        return String.format("PortfolioSolver{makespan=%d, winner=%s, plans=%d, abandoned=%d}",
+                incumbent == null ? -1 : incumbent.makespan, incumbent == null ? null : incumbent.strategy,
+                plansBuilt.get(), plansAbandoned.get());
+    }
+
+    /** Immutable snapshot of a finished plan, so it can be published through the shared record. */
+    private static final class Incumbent {
+        final RoutePlan plan;
+        final Strategy strategy;
+        final int planned;
+        final long makespan;
+        final long totalTravelTime;
+
+        Incumbent(RoutePlan plan, Strategy strategy) {
+            this.plan = plan.copy();
+            this.strategy = strategy;
+            this.planned = plan.plannedPackages();
+            this.makespan = plan.makespan();
+            this.totalTravelTime = plan.totalTravelTime();
+        }
+
+        /** More packages planned first, then the shorter makespan, then less travel. */
+        boolean beats(Incumbent other) {
+            if (planned != other.planned) {
+                return planned > other.planned;
+            }
+            if (makespan != other.makespan) {
+                return makespan < other.makespan;
+            }
+            return totalTravelTime < other.totalTravelTime;
+        }
+    }
+}
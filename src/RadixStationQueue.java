@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * Monotone radix heap on int keys. An entry sits in the bucket of the highest bit
+ * in which its key differs from the last polled key; decrease-key inserts a new
+ * entry and the outdated one is dropped when its bucket is redistributed.
+ */
+public class RadixStationQueue implements StationQueue {
+    private static final int BUCKETS = 33;
+
+    private final long[][] buckets = new long[BUCKETS][];
+    private final int[] bucketSizes = new int[BUCKETS];
+    private int[] keys = new int[0];
+    private int last;
+    private int size;
+
+    public RadixStationQueue() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new long[8];
+        }
+    }
+
+    @Override
+    public void reset(int stations, int maxEdgeWeight) {
+        if (keys.length < stations) {
+            keys = new int[stations];
+        }
+        Arrays.fill(keys, 0, stations, Integer.MAX_VALUE);
+        Arrays.fill(bucketSizes, 0);
+        last = 0;
+        size = 0;
+    }
+
+    @Override
+    public void insertOrDecrease(int station, int distance) {
+        keys[station] = distance;
+        push(bucketOf(distance), ((long) distance << 32) | station);
+    }
+
+    @Override
+    public int poll() {
+        while (size > 0) {
+            if (bucketSizes[0] == 0) {
+                redistribute();
+                continue;
+            }
+            long entry = buckets[0][--bucketSizes[0]];
+            size--;
+            int station = (int) entry;
+            if ((int) (entry >>> 32) == keys[station]) {
+                keys[station] = -1;
+                return station;
+            }
+        }
+        return RailNetwork.NO_STATION;
+    }
+
+    private void redistribute() {
+        int bucket = 1;
+        while (bucketSizes[bucket] == 0) {
+            bucket++;
+        }
+        long[] entries = buckets[bucket];
+        int count = bucketSizes[bucket];
+        bucketSizes[bucket] = 0;
+        size -= count;
+
+        // outdated entries are dropped here, before the new minimum is chosen
+        int live = 0;
+        int minKey = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            long entry = entries[i];
+            int key = (int) (entry >>> 32);
+            if (key == keys[(int) entry]) {
+                entries[live++] = entry;
+                minKey = Math.min(minKey, key);
+            }
+        }
+        if (live == 0) {
+            return;
+        }
+        last = minKey;
+        for (int i = 0; i < live; i++) {
+            push(bucketOf((int) (entries[i] >>> 32)), entries[i]);
+        }
+    }
+
+    private int bucketOf(int key) {
+        return key == last ? 0 : 32 - Integer.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void push(int bucket, long entry) {
+        if (bucketSizes[bucket] == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], buckets[bucket].length * 2);
+        }
+        buckets[bucket][bucketSizes[bucket]++] = entry;
+        size++;
+    }
+}
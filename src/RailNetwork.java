@@ -0,0 +1,189 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+public class RailNetwork {
+    public static final int NO_STATION = -1;
+
+    private final String[] names;
+    private final Map<String, Integer> ids;
+
+    // CSR adjacency: the edges leaving station v are offsets[v] .. offsets[v + 1] - 1
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int maxWeight;
+
+    private RailNetwork(String[] names, Map<String, Integer> ids, int[] offsets, int[] targets, int[] weights) {
+        this.names = names;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.maxWeight = Arrays.stream(weights).max().orElse(0);
+    }
+
+    /** A network from arrays saved earlier, such as a {@link RoutingSnapshot}'s. */
+    static RailNetwork of(String[] names, int[] offsets, int[] targets, int[] weights) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            ids.put(names[id], id);
+        }
+        return new RailNetwork(names, ids, offsets, targets, weights);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    public int maxWeight() {
+        return maxWeight;
+    }
+
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? NO_STATION : id;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public boolean contains(String name) {
+        return ids.containsKey(name);
+    }
+
+    public int firstEdge(int station) {
+        return offsets[station];
+    }
+
+    public int endEdge(int station) {
+        return offsets[station + 1];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public int weight(int edge) {
+        return weights[edge];
+    }
+
+    /** CRC32 over station names and adjacency, used to tie saved routing data to this network. */
+    public long checksum() {
+        CRC32 crc = new CRC32();
+        for (String name : names) {
+            crc.update(name.getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+        }
+        for (int[] array : new int[][]{offsets, targets, weights}) {
+            for (int value : array) {
+                crc.update(value >>> 24);
+                crc.update(value >>> 16);
+                crc.update(value >>> 8);
+                crc.update(value);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /** Whether the other network has the same stations in the same order and the same edges. */
+    boolean hasSameLayout(RailNetwork other) {
+        return Arrays.equals(names, other.names) && Arrays.equals(offsets, other.offsets)
+                && Arrays.equals(targets, other.targets) && Arrays.equals(weights, other.weights);
+    }
+
+    public int edgeTime(int from, int to) {
+        int best = -1;
+        for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+            if (targets[e] == to && (best < 0 || weights[e] < best)) {
+                best = weights[e];
+            }
+        }
+        return best;
+    }
+
+    /** A builder holding this network's stations and edges, to derive a changed network from. */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        for (String name : names) {
+            builder.addStation(name);
+        }
+        for (int station = 0; station < size(); station++) {
+            for (int e = offsets[station]; e < offsets[station + 1]; e++) {
+                builder.edges.add(new int[]{station, targets[e], weights[e]});
+            }
+        }
+        return builder;
+    }
+
+    public static class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<int[]> edges = new ArrayList<>();
+
+        public int addStation(String name) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            ids.put(name, names.size());
+            names.add(name);
+            return names.size() - 1;
+        }
+
+        public boolean contains(String name) {
+            return ids.containsKey(name);
+        }
+
+        public Collection<String> getStations() {
+            return Collections.unmodifiableList(names);
+        }
+
+        public void addEdge(String from, String to, int journeyTimeInMinutes) {
+            addEdge(addStation(from), addStation(to), journeyTimeInMinutes);
+        }
+
+        /** Adds an edge between stations already added, by id. */
+        public void addEdge(int a, int b, int journeyTimeInMinutes) {
+            edges.add(new int[]{a, b, journeyTimeInMinutes});
+            edges.add(new int[]{b, a, journeyTimeInMinutes});
+        }
+
+        /** Replaces every edge between the two stations; a negative time just closes them. */
+        public void setEdge(String from, String to, int journeyTimeInMinutes) {
+            int a = addStation(from);
+            int b = addStation(to);
+            edges.removeIf(edge -> (edge[0] == a && edge[1] == b) || (edge[0] == b && edge[1] == a));
+            if (journeyTimeInMinutes >= 0) {
+                addEdge(from, to, journeyTimeInMinutes);
+            }
+        }
+
+        public RailNetwork build() {
+            int n = names.size();
+            int[] offsets = new int[n + 1];
+            for (int[] edge : edges) {
+                offsets[edge[0] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            int[] targets = new int[edges.size()];
+            int[] weights = new int[edges.size()];
+            int[] next = Arrays.copyOf(offsets, n);
+            for (int[] edge : edges) {
+                int slot = next[edge[0]]++;
+                targets[slot] = edge[1];
+                weights[slot] = edge[2];
+            }
+
+            return new RailNetwork(names.toArray(new String[0]), new HashMap<>(ids), offsets, targets, weights);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RouteChange {
+    private int from;
+    private int to;
+    private int oldTime;
+    private int newTime;
+
+    /** The change with station names from the network, which ids alone do not tell apart in a log. */
+    public String describe(RailNetwork network) {
+        return format(network.nameOf(from), network.nameOf(to));
+    }
+
+    @Override
+    public String toString() {
+        return format(String.valueOf(from), String.valueOf(to));
+    }
+
+    private String format(String fromStation, String toStation) {
+        return String.format("RouteChange{%s <-> %s, time %s -> %s}",
+                fromStation, toStation,
+                oldTime == ComputePath.UNREACHABLE ? "unreachable" : oldTime,
+                newTime == ComputePath.UNREACHABLE ? "unreachable" : newTime);
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ * Nearest-neighbour pickup/delivery simulation used to price auction bids, working on
+ * station ids in reusable per-thread buffers so an evaluation allocates nothing.
+ * Ties between equally near stops go to the lower station id. The kernel keeps no routing between
+ * calls, so a thread can price bids on different networks in turn.
+ */
+public final class RouteCostKernel {
+    private static final ThreadLocal<RouteCostKernel> KERNELS = ThreadLocal.withInitial(RouteCostKernel::new);
+
+    private int[] pickups = new int[16];
+    private int[] destinations = new int[16];
+    private int count;
+    private long totalWeight;
+
+    // distinct pickup stations and distinct stops of the current delivery walk
+    private int[] pickupStops = new int[16];
+    private boolean[] pickupDone = new boolean[16];
+    private int[] walkStops = new int[16];
+    private boolean[] walkDone = new boolean[16];
+
+    // a station is already listed when its stamp equals the current one
+    private int[] stationStamps = new int[0];
+    private int stamp;
+
+    private long walkTime;
+    private int walkEnd;
+
+    public static RouteCostKernel forCurrentThread() {
+        return KERNELS.get();
+    }
+
+    public void clear() {
+        count = 0;
+        totalWeight = 0;
+    }
+
+    public void add(int pickup, int destination, int weight) {
+        if (count == pickups.length) {
+            int capacity = count * 2;
+            pickups = Arrays.copyOf(pickups, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+            pickupStops = new int[capacity];
+            pickupDone = new boolean[capacity];
+            walkStops = new int[capacity];
+            walkDone = new boolean[capacity];
+        }
+        pickups[count] = pickup;
+        destinations[count] = destination;
+        totalWeight += weight;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long totalWeight() {
+        return totalWeight;
+    }
+
+    /** Time to visit every pickup nearest-first, delivering each pickup's packages before moving on. */
+    public double deliveryTime(Routing routing, int start) {
+        int pickupCount = 0;
+        nextStamp(routing);
+        for (int i = 0; i < count; i++) {
+            if (stationStamps[pickups[i]] != stamp) {
+                stationStamps[pickups[i]] = stamp;
+                pickupStops[pickupCount++] = pickups[i];
+            }
+        }
+        Arrays.fill(pickupDone, 0, pickupCount, false);
+
+        int location = start;
+        long totalTime = 0;
+        for (int visited = 0; visited < pickupCount; visited++) {
+            int next = nearest(routing, location, pickupStops, pickupDone, pickupCount);
+            if (next < 0) {
+                break;
+            }
+            pickupDone[next] = true;
+            int pickup = pickupStops[next];
+            totalTime += routing.time(location, pickup);
+
+            walk(routing, pickup, pickup);
+            totalTime += walkTime;
+            location = walkEnd;
+        }
+        return totalTime;
+    }
+
+    /** Where the train ends after delivering every package nearest-first from {@code start}. */
+    public int finalLocation(Routing routing, int start) {
+        walk(routing, start, RailNetwork.NO_STATION);
+        return walkEnd;
+    }
+
+    /**
+     * Nearest-first walk from {@code start} over the distinct destinations of the packages picked
+     * up at {@code pickup}, or of all packages for {@link RailNetwork#NO_STATION}.
+     */
+    private void walk(Routing routing, int start, int pickup) {
+        int stopCount = 0;
+        nextStamp(routing);
+        for (int i = 0; i < count; i++) {
+            if ((pickup == RailNetwork.NO_STATION || pickups[i] == pickup) && stationStamps[destinations[i]] != stamp) {
+                stationStamps[destinations[i]] = stamp;
+                walkStops[stopCount++] = destinations[i];
+            }
+        }
+        Arrays.fill(walkDone, 0, stopCount, false);
+
+        int location = start;
+        long time = 0;
+        for (int visited = 0; visited < stopCount; visited++) {
+            int next = nearest(routing, location, walkStops, walkDone, stopCount);
+            if (next < 0) {
+                break;
+            }
+            walkDone[next] = true;
+            time += routing.time(location, walkStops[next]);
+            location = walkStops[next];
+        }
+        walkTime = time;
+        walkEnd = location;
+    }
+
+    private static int nearest(Routing routing, int location, int[] stops, boolean[] done, int stopCount) {
+        int best = -1;
+        int shortestTime = ComputePath.UNREACHABLE;
+        for (int i = 0; i < stopCount; i++) {
+            if (done[i]) {
+                continue;
+            }
+            int time = routing.time(location, stops[i]);
+            if (time < shortestTime || (time == shortestTime && best >= 0 && stops[i] < stops[best])) {
+                shortestTime = time;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private void nextStamp(Routing routing) {
+        int stations = routing.getNetwork().size();
+        if (stationStamps.length < stations) {
+            stationStamps = new int[stations];
+            stamp = 0;
+        }
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(stationStamps, 0);
+            stamp = 1;
+        }
+    }
+}
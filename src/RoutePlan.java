@@ -0,0 +1,499 @@
+import java.util.*;
+
+/**
+ * Visit order of every train as a sequence of stops over station ids. Stop {@code 2p} picks
+ * package p up and stop {@code 2p + 1} delivers it. A route fits its train when every delivery
+ * follows its pickup and the load on board never exceeds the train's free capacity. A delivery
+ * without a pickup in the route is for a package the train already carries. Leg times come from
+ * the plan's {@link Routing}.
+ */
+public class RoutePlan {
+    /** Leg time used for unreachable stations, large enough that no plan using one ever wins. */
+    static final long UNREACHABLE_LEG = 1L << 40;
+
+    private Routing routing;
+    private final List<Train> trains;
+    private final List<Package> packages;
+    private int[] pickupStations;
+    private int[] deliveryStations;
+    private int[] weights;
+    private final int[] startStations;
+    private final int[] startTimes;
+    private final int[] capacities;
+
+    private final int[][] routes;
+    private final long[] routeTimes;
+
+    public RoutePlan(Routing routing, List<Train> trains, List<Package> packages) {
+        this.routing = routing;
+        this.trains = trains;
+        this.packages = packages;
+        int p = packages.size();
+        pickupStations = new int[p];
+        deliveryStations = new int[p];
+        weights = new int[p];
+        for (int i = 0; i < p; i++) {
+            Package pkg = packages.get(i);
+            pickupStations[i] = routing.stationId(pkg.getStartingNode().getName());
+            deliveryStations[i] = routing.stationId(pkg.getEndNode().getName());
+            weights[i] = pkg.getWeightInKg();
+        }
+        int t = trains.size();
+        startStations = new int[t];
+        startTimes = new int[t];
+        capacities = new int[t];
+        for (int i = 0; i < t; i++) {
+            Train train = trains.get(i);
+            startStations[i] = routing.stationId(train.getCurrentStation());
+            startTimes[i] = train.getCurrentTime();
+            capacities[i] = train.getCapacityInKg() - train.getCurrentLoad();
+        }
+        routes = new int[t][0];
+        routeTimes = new long[t];
+    }
+
+    /** A plan over the run's trains and packages with every route still empty. */
+    public RoutePlan(PlanningContext context) {
+        this(context.getRouting(), context.getTrains(), context.getPackages());
+    }
+
+    private RoutePlan(RoutePlan other) {
+        routing = other.routing;
+        trains = other.trains;
+        packages = other.packages;
+        pickupStations = other.pickupStations;
+        deliveryStations = other.deliveryStations;
+        weights = other.weights;
+        startStations = other.startStations;
+        startTimes = other.startTimes;
+        capacities = other.capacities;
+        routes = other.routes.clone();
+        routeTimes = other.routeTimes.clone();
+    }
+
+    /**
+     * The plan the auction's assignment is executed with: nearest pickup first, and from each pickup
+     * its packages are delivered nearest destination first before moving on.
+     */
+    public static RoutePlan fromAssignments(PlanningContext context, AssignmentIndex assignments) {
+        RoutePlan plan = new RoutePlan(context);
+        List<Train> trains = context.getTrains();
+        List<Package> packages = context.getPackages();
+        Map<Package, Integer> index = new HashMap<>();
+        for (int p = 0; p < packages.size(); p++) {
+            index.put(packages.get(p), p);
+        }
+        for (int t = 0; t < trains.size(); t++) {
+            Collection<Package> bundle = assignments.packagesOf(trains.get(t));
+            int[] bundleIds = new int[bundle.size()];
+            int size = 0;
+            for (Package pkg : bundle) {
+                bundleIds[size++] = index.get(pkg);
+            }
+            plan.setRoute(t, plan.greedyRoute(t, bundleIds));
+        }
+        return plan;
+    }
+
+    private int[] greedyRoute(int train, int[] bundle) {
+        int[] stops = new int[2 * bundle.length];
+        int size = 0;
+        boolean[] picked = new boolean[bundle.length];
+        int location = startStations[train];
+        while (true) {
+            int pickup = nearest(location, bundle, picked, pickupStations);
+            if (pickup == RailNetwork.NO_STATION) {
+                break;
+            }
+            boolean[] delivered = new boolean[bundle.length];
+            for (int i = 0; i < bundle.length; i++) {
+                if (pickupStations[bundle[i]] == pickup) {
+                    picked[i] = true;
+                    stops[size++] = pickupStop(bundle[i]);
+                } else {
+                    delivered[i] = true;
+                }
+            }
+            location = pickup;
+            while (true) {
+                int destination = nearest(location, bundle, delivered, deliveryStations);
+                if (destination == RailNetwork.NO_STATION) {
+                    break;
+                }
+                for (int i = 0; i < bundle.length; i++) {
+                    if (!delivered[i] && deliveryStations[bundle[i]] == destination) {
+                        delivered[i] = true;
+                        stops[size++] = deliveryStop(bundle[i]);
+                    }
+                }
+                location = destination;
+            }
+            // a destination that cannot be reached leaves its packages on board, so they are dropped
+            size = dropUndelivered(stops, size);
+        }
+        return Arrays.copyOf(stops, size);
+    }
+
+    /** Nearest station among the unmarked packages, the lower id on equal times. */
+    private int nearest(int location, int[] bundle, boolean[] done, int[] stations) {
+        int best = RailNetwork.NO_STATION;
+        int shortestTime = ComputePath.UNREACHABLE;
+        for (int i = 0; i < bundle.length; i++) {
+            if (done[i]) {
+                continue;
+            }
+            int station = stations[bundle[i]];
+            int time = routing.time(location, station);
+            if (time < shortestTime || (time == shortestTime && station < best)) {
+                shortestTime = time;
+                best = station;
+            }
+        }
+        return best;
+    }
+
+    private static int dropUndelivered(int[] stops, int size) {
+        Set<Integer> delivered = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            if (!isPickup(stops[i])) {
+                delivered.add(packageOf(stops[i]));
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (delivered.contains(packageOf(stops[i]))) {
+                stops[kept++] = stops[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Adds a package without placing it and returns its index. Copies taken earlier keep
+     * working but do not know the package.
+     */
+    public int addPackage(Package pkg) {
+        int p = pickupStations.length;
+        packages.add(pkg);
+        pickupStations = Arrays.copyOf(pickupStations, p + 1);
+        deliveryStations = Arrays.copyOf(deliveryStations, p + 1);
+        weights = Arrays.copyOf(weights, p + 1);
+        pickupStations[p] = routing.stationId(pkg.getStartingNode().getName());
+        deliveryStations[p] = routing.stationId(pkg.getEndNode().getName());
+        weights[p] = pkg.getWeightInKg();
+        return p;
+    }
+
+    /**
+     * Moves the start of the train's route: it is at the station at the given time with the
+     * given free capacity, and only the given stops are left.
+     */
+    public void rebase(int train, int station, int time, int freeCapacity, int[] stops) {
+        startStations[train] = station;
+        startTimes[train] = time;
+        capacities[train] = freeCapacity;
+        setRoute(train, stops);
+    }
+
+    public Routing routing() {
+        return routing;
+    }
+
+    /** Switches to other tables for the same stations, e.g. after an edge closed, and re-times every route. */
+    public void setRouting(Routing routing) {
+        this.routing = routing;
+        for (int t = 0; t < routes.length; t++) {
+            routeTimes[t] = travelTime(t, routes[t]);
+        }
+    }
+
+    public RoutePlan copy() {
+        return new RoutePlan(this);
+    }
+
+    static int pickupStop(int pkg) {
+        return 2 * pkg;
+    }
+
+    static int deliveryStop(int pkg) {
+        return 2 * pkg + 1;
+    }
+
+    static int packageOf(int stop) {
+        return stop >> 1;
+    }
+
+    static boolean isPickup(int stop) {
+        return (stop & 1) == 0;
+    }
+
+    /**
+     * Writes the packages delivered on arrival at the station of {@code stops[index]}, which are the
+     * delivery stops in the run of stops at that station starting there, and returns how many.
+     */
+    int deliveriesAt(int[] stops, int index, int[] into) {
+        int station = station(stops[index]);
+        int count = 0;
+        for (int i = index; i < stops.length && station(stops[i]) == station; i++) {
+            if (!isPickup(stops[i])) {
+                into[count++] = packageOf(stops[i]);
+            }
+        }
+        return count;
+    }
+
+    /** Shortest time between two stations, {@link #UNREACHABLE_LEG} when there is no path. */
+    long leg(int from, int to) {
+        int time = routing.time(from, to);
+        return time == ComputePath.UNREACHABLE ? UNREACHABLE_LEG : time;
+    }
+
+    public int trainCount() {
+        return trains.size();
+    }
+
+    public int packageCount() {
+        return packages.size();
+    }
+
+    public Train train(int t) {
+        return trains.get(t);
+    }
+
+    public Package pkg(int p) {
+        return packages.get(p);
+    }
+
+    public int station(int stop) {
+        return isPickup(stop) ? pickupStations[packageOf(stop)] : deliveryStations[packageOf(stop)];
+    }
+
+    public int weight(int pkg) {
+        return weights[pkg];
+    }
+
+    public int startStation(int train) {
+        return startStations[train];
+    }
+
+    public int startTime(int train) {
+        return startTimes[train];
+    }
+
+    public int capacity(int train) {
+        return capacities[train];
+    }
+
+    /** The train's stops; callers must not modify the array, use {@link #setRoute} instead. */
+    int[] stops(int train) {
+        return routes[train];
+    }
+
+    public void setRoute(int train, int[] stops) {
+        routes[train] = stops;
+        routeTimes[train] = travelTime(train, stops);
+    }
+
+    public long travelTime(int train) {
+        return routeTimes[train];
+    }
+
+    public long finishTime(int train) {
+        return startTimes[train] + routeTimes[train];
+    }
+
+    public long makespan() {
+        long makespan = 0;
+        for (int t = 0; t < routes.length; t++) {
+            makespan = Math.max(makespan, finishTime(t));
+        }
+        return makespan;
+    }
+
+    /** Whether some train can carry the package from pickup to destination on its own. */
+    public boolean isServable(int pkg) {
+        long ride = leg(pickupStations[pkg], deliveryStations[pkg]);
+        for (int t = 0; t < routes.length; t++) {
+            if (weights[pkg] <= capacities[t] && ride < UNREACHABLE_LEG
+                    && leg(startStations[t], pickupStations[pkg]) < UNREACHABLE_LEG) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Packages that have a place in some route. */
+    public int plannedPackages() {
+        int pickups = 0;
+        for (int[] route : routes) {
+            for (int stop : route) {
+                if (isPickup(stop)) {
+                    pickups++;
+                }
+            }
+        }
+        return pickups;
+    }
+
+    public long totalTravelTime() {
+        long total = 0;
+        for (long time : routeTimes) {
+            total += time;
+        }
+        return total;
+    }
+
+    long travelTime(int train, int[] stops) {
+        long time = 0;
+        int location = startStations[train];
+        for (int stop : stops) {
+            int station = station(stop);
+            time += leg(location, station);
+            location = station;
+        }
+        return time;
+    }
+
+    /** Load on board after each stop. */
+    int[] loads(int[] stops) {
+        int[] loads = new int[stops.length];
+        int load = 0;
+        for (int i = 0; i < stops.length; i++) {
+            load += isPickup(stops[i]) ? weights[packageOf(stops[i])] : -weights[packageOf(stops[i])];
+            loads[i] = load;
+        }
+        return loads;
+    }
+
+    /**
+     * Cheapest way to add the package to a route of the train: its pickup before stop i and its
+     * delivery before stop j (i &lt;= j) without exceeding the train's capacity. Writes i and j to
+     * {@code positions} and returns the added travel time, {@link #UNREACHABLE_LEG} when nothing fits.
+     */
+    long bestInsertion(int train, int[] route, int[] routeLoads, int pkg, int[] positions) {
+        long best = UNREACHABLE_LEG;
+        int n = route.length;
+        int weight = weight(pkg);
+        int free = capacity(train) - weight;
+        int pickup = station(pickupStop(pkg));
+        int delivery = station(deliveryStop(pkg));
+        for (int i = 0; i <= n; i++) {
+            int loadBefore = i == 0 ? 0 : routeLoads[i - 1];
+            if (loadBefore > free) {
+                continue;
+            }
+            int previous = i == 0 ? startStation(train) : station(route[i - 1]);
+            // pickup and delivery back to back
+            long delta = leg(previous, pickup) + leg(pickup, delivery);
+            if (i < n) {
+                int next = station(route[i]);
+                delta += leg(delivery, next) - leg(previous, next);
+            }
+            if (delta < best) {
+                best = delta;
+                positions[0] = i;
+                positions[1] = i;
+            }
+            if (i == n) {
+                break;
+            }
+
+            int next = station(route[i]);
+            long pickupDelta = leg(previous, pickup) + leg(pickup, next) - leg(previous, next);
+            int maxLoad = loadBefore;
+            for (int j = i + 1; j <= n; j++) {
+                // the package rides along over stops i..j-1
+                maxLoad = Math.max(maxLoad, routeLoads[j - 1]);
+                if (maxLoad > free) {
+                    break;
+                }
+                int beforeDelivery = station(route[j - 1]);
+                long deliveryDelta = leg(beforeDelivery, delivery);
+                if (j < n) {
+                    int afterDelivery = station(route[j]);
+                    deliveryDelta += leg(delivery, afterDelivery) - leg(beforeDelivery, afterDelivery);
+                }
+                if (pickupDelta + deliveryDelta < best) {
+                    best = pickupDelta + deliveryDelta;
+                    positions[0] = i;
+                    positions[1] = j;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds the package where it delays the plan least: to the train that would finish earliest
+     * with it, at that train's cheapest insertion. Returns the train, or -1 when it fits nowhere.
+     */
+    public int insertCheapest(int pkg) {
+        int[] positions = new int[2];
+        int bestTrain = -1;
+        long bestFinish = UNREACHABLE_LEG;
+        long bestDelta = UNREACHABLE_LEG;
+        int bestPickup = 0;
+        int bestDelivery = 0;
+        for (int t = 0; t < routes.length; t++) {
+            long delta = bestInsertion(t, routes[t], loads(routes[t]), pkg, positions);
+            if (delta >= UNREACHABLE_LEG) {
+                continue;
+            }
+            long finish = finishTime(t) + delta;
+            if (finish < bestFinish || (finish == bestFinish && delta < bestDelta)) {
+                bestTrain = t;
+                bestFinish = finish;
+                bestDelta = delta;
+                bestPickup = positions[0];
+                bestDelivery = positions[1];
+            }
+        }
+        if (bestTrain >= 0) {
+            setRoute(bestTrain, inserted(routes[bestTrain], pkg, bestPickup, bestDelivery));
+        }
+        return bestTrain;
+    }
+
+    /** Inserts the pickup before stop i and the delivery before stop j of the original route. */
+    static int[] inserted(int[] route, int pkg, int i, int j) {
+        int[] result = new int[route.length + 2];
+        int size = 0;
+        for (int k = 0; k <= route.length; k++) {
+            if (k == i) {
+                result[size++] = pickupStop(pkg);
+            }
+            if (k == j) {
+                result[size++] = deliveryStop(pkg);
+            }
+            if (k < route.length) {
+                result[size++] = route[k];
+            }
+        }
+        return result;
+    }
+
+    boolean fits(int train, int[] stops) {
+        Set<Integer> onBoard = new HashSet<>();
+        Set<Integer> delivered = new HashSet<>();
+        int load = 0;
+        for (int stop : stops) {
+            int pkg = packageOf(stop);
+            if (isPickup(stop)) {
+                if (delivered.contains(pkg)) {
+                    return false;
+                }
+                onBoard.add(pkg);
+                load += weights[pkg];
+                if (load > capacities[train]) {
+                    return false;
+                }
+            } else {
+                // a package carried from before the route starts only frees capacity
+                onBoard.remove(pkg);
+                delivered.add(pkg);
+                load -= weights[pkg];
+            }
+        }
+        return onBoard.isEmpty();
+    }
+}
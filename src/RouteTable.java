@@ -0,0 +1,19 @@
+public interface RouteTable {
+    /** Travel time in minutes, or {@link ComputePath#UNREACHABLE}. */
+    int time(int from, int to);
+
+    /** Stations from {@code from} to {@code to} inclusive, or null when unreachable. */
+    int[] path(int from, int to);
+
+    /**
+     * Time and path together, or null when unreachable. Tables that search per query override it
+     * so a route costs one search instead of two.
+     */
+    default TrainRoute route(int from, int to) {
+        int[] path = path(from, to);
+        return path == null ? null : new TrainRoute(time(from, to), path);
+    }
+
+    /** Mean travel time from {@code from} to every reachable station. */
+    double averageTime(int from);
+}
@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A network together with its shortest-path tables, built by {@link ComputePath#compute}. Neither
+ * is changed after it is built: an edge update returns a new routing and leaves this one as it
+ * was, so any number of planning threads can share a routing without locks. Backends that fill
+ * in while answering, such as the lazy trees or the landmark averages, do so thread-safely.
+ */
+public final class Routing {
+    private final RailNetwork network;
+    private final RouteTable table;
+    private final ComputePath.Storage storage;
+    private final int threads;
+    private final List<RouteChange> changes;
+
+    Routing(RailNetwork network, RouteTable table, ComputePath.Storage storage, int threads,
+            List<RouteChange> changes) {
+        this.network = network;
+        this.table = table;
+        this.storage = storage;
+        this.threads = threads;
+        this.changes = changes == null ? null : Collections.unmodifiableList(changes);
+    }
+
+    public RailNetwork getNetwork() {
+        return network;
+    }
+
+    public RouteTable getTable() {
+        return table;
+    }
+
+    public ComputePath.Storage getStorage() {
+        return storage;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Station pairs (from &lt; to) whose time or path differs from the routing this one was
+     * derived from by an edge change, or null when that is not known: the tables were built from
+     * scratch, or a lazy table had not yet solved every source, so any pair may have changed.
+     */
+    public List<RouteChange> getChanges() {
+        return changes;
+    }
+
+    /** A routing with the edge added, reopened or set to its new journey time. */
+    public Routing updateEdge(Edge edge) {
+        return ComputePath.changeEdge(this, edge.getStartStation().getName(), edge.getEndStation().getName(),
+                edge.getJourneyTimeInMinutes());
+    }
+
+    /** A routing without the edge; only the sources whose trees used it are solved again. */
+    public Routing closeEdge(Edge edge) {
+        return ComputePath.changeEdge(this, edge.getStartStation().getName(), edge.getEndStation().getName(), -1);
+    }
+
+    public int stationId(String name) {
+        return network.idOf(name);
+    }
+
+    public String stationName(int id) {
+        return network.nameOf(id);
+    }
+
+    /** Travel time in minutes, or {@link ComputePath#UNREACHABLE}. */
+    public int time(int from, int to) {
+        return table.time(from, to);
+    }
+
+    public TrainRoute route(int from, int to) {
+        return table.route(from, to);
+    }
+
+    public double averageTime(int from) {
+        return table.averageTime(from);
+    }
+
+    /** The change with this routing's station names, see {@link RouteChange#describe}. */
+    public String describe(RouteChange change) {
+        return change.describe(network);
+    }
+
+    public List<String> pathNames(int[] path) {
+        List<String> names = new ArrayList<>(path.length);
+        for (int station : path) {
+            names.add(network.nameOf(station));
+        }
+        return names;
+    }
+}
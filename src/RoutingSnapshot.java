@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Shortest-path tables saved next to the network they belong to and read back through
+ * {@link FileChannel#map}, so a restart plans without solving a single source and every JVM on
+ * the host reads the same pages. The little-endian file holds a header (magic, version, network
+ * checksum, station and edge counts, name bytes), the network's CSR arrays and station names,
+ * the mean travel time per station, and then the distance and predecessor matrices row by row.
+ */
+public final class RoutingSnapshot implements RouteTable {
+    private static final int MAGIC = 0x314e5352; // "RSN1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    // matrices are mapped in pieces of whole rows, each below the 2 GB limit of one mapping
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private final RailNetwork network;
+    private final long networkChecksum;
+    private final int stations;
+    private final double[] averageTimes;
+    private final int rowsPerSegment;
+    private final IntBuffer[] distances;
+    private final IntBuffer[] previous;
+
+    private RoutingSnapshot(RailNetwork network, long networkChecksum, double[] averageTimes,
+                            IntBuffer[] distances, IntBuffer[] previous, int rowsPerSegment) {
+        this.network = network;
+        this.networkChecksum = networkChecksum;
+        this.stations = network.size();
+        this.averageTimes = averageTimes;
+        this.distances = distances;
+        this.previous = previous;
+        this.rowsPerSegment = rowsPerSegment;
+    }
+
+    /**
+     * Writes the network and the table, which must keep per-source trees. The file is written
+     * under a temporary name of its own and moved into place, so readers never see half of it and
+     * concurrent writers of the same file do not write into each other's.
+     */
+    public static void save(Path file, RailNetwork network, RouteTable table) throws IOException {
+        if (!(table instanceof TreeRouteTable)) {
+            throw new IllegalArgumentException("Only tables that keep shortest-path trees can be saved");
+        }
+        TreeRouteTable trees = (TreeRouteTable) table;
+        int n = network.size();
+        byte[][] names = new byte[n][];
+        int nameBytes = 0;
+        for (int station = 0; station < n; station++) {
+            names[station] = network.nameOf(station).getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[station].length;
+        }
+
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(network.checksum());
+            out.putInt(n);
+            out.putInt(network.edgeCount());
+            out.putLong(nameBytes);
+
+            for (int station = 0; station <= n; station++) {
+                out.putInt(station < n ? network.firstEdge(station) : network.edgeCount());
+            }
+            for (int edge = 0; edge < network.edgeCount(); edge++) {
+                out.putInt(network.target(edge));
+            }
+            for (int edge = 0; edge < network.edgeCount(); edge++) {
+                out.putInt(network.weight(edge));
+            }
+            int nameOffset = 0;
+            for (int station = 0; station <= n; station++) {
+                out.putInt(nameOffset);
+                nameOffset += station < n ? names[station].length : 0;
+            }
+            for (byte[] name : names) {
+                out.putBytes(name);
+            }
+            out.padTo(8);
+            for (int station = 0; station < n; station++) {
+                out.putDouble(table.averageTime(station));
+            }
+            for (int source = 0; source < n; source++) {
+                for (int distance : trees.tree(source).getDistances()) {
+                    out.putInt(distance);
+                }
+            }
+            for (int source = 0; source < n; source++) {
+                for (int station : trees.tree(source).getPrevious()) {
+                    out.putInt(station);
+                }
+            }
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Maps a snapshot for the given network, or returns null when the file was written for a
+     * different network or by another version, so the caller rebuilds it.
+     */
+    public static RoutingSnapshot load(Path file, RailNetwork network) throws IOException {
+        return load(file, network, true);
+    }
+
+    /** Maps a snapshot together with the network saved in it. */
+    public static RoutingSnapshot load(Path file) throws IOException {
+        RoutingSnapshot snapshot = load(file, null, false);
+        if (snapshot == null) {
+            throw new IOException("Snapshot " + file + " was written by another version");
+        }
+        return snapshot;
+    }
+
+    private static RoutingSnapshot load(Path file, RailNetwork network, boolean matchNetwork) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_BYTES, channel.size()))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.limit() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a routing snapshot: " + file);
+            }
+            long checksum = header.getLong(8);
+            if (header.getInt(4) != VERSION || (matchNetwork && checksum != network.checksum())) {
+                return null;
+            }
+            int n = header.getInt(16);
+            int edges = header.getInt(20);
+            long nameBytes = header.getLong(24);
+            if (matchNetwork && (n != network.size() || edges != network.edgeCount())) {
+                return null;
+            }
+
+            long networkStart = HEADER_BYTES;
+            long namesStart = networkStart + 4L * (n + 1 + 2L * edges + n + 1);
+            long averagesStart = align(namesStart + nameBytes, 8);
+            long distancesStart = averagesStart + 8L * n;
+            long matrixBytes = 4L * n * n;
+            long expectedSize = distancesStart + 2 * matrixBytes;
+            if (channel.size() != expectedSize) {
+                throw new IOException("Routing snapshot " + file + " is " + channel.size() + " bytes, expected " + expectedSize);
+            }
+
+            RailNetwork saved = readNetwork(channel, n, edges, nameBytes);
+            if (matchNetwork) {
+                // the checksum names the file, so another network with the same checksum may have written it
+                if (!saved.hasSameLayout(network)) {
+                    return null;
+                }
+            } else if (saved.checksum() != checksum) {
+                throw new IOException("Routing snapshot " + file + " does not match its network checksum");
+            } else {
+                network = saved;
+            }
+            double[] averageTimes = new double[n];
+            channel.map(FileChannel.MapMode.READ_ONLY, averagesStart, 8L * n).order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer().get(averageTimes);
+
+            int rowsPerSegment = (int) Math.max(1, Math.min(n, SEGMENT_BYTES / Math.max(1, 4L * n)));
+            return new RoutingSnapshot(network, checksum, averageTimes,
+                    mapMatrix(channel, distancesStart, n, rowsPerSegment),
+                    mapMatrix(channel, distancesStart + matrixBytes, n, rowsPerSegment), rowsPerSegment);
+        }
+    }
+
+    private static RailNetwork readNetwork(FileChannel channel, int n, int edges, long nameBytes) throws IOException {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                4L * (n + 1 + 2L * edges + n + 1) + nameBytes).order(ByteOrder.LITTLE_ENDIAN);
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[edges];
+        int[] weights = new int[edges];
+        int[] nameOffsets = new int[n + 1];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(offsets).get(targets).get(weights).get(nameOffsets);
+        buffer.position(4 * (n + 1 + 2 * edges + n + 1));
+        String[] names = new String[n];
+        for (int station = 0; station < n; station++) {
+            byte[] name = new byte[nameOffsets[station + 1] - nameOffsets[station]];
+            buffer.get(name);
+            names[station] = new String(name, StandardCharsets.UTF_8);
+        }
+        return RailNetwork.of(names, offsets, targets, weights);
+    }
+
+    private static IntBuffer[] mapMatrix(FileChannel channel, long start, int n, int rowsPerSegment) throws IOException {
+        int segments = n == 0 ? 0 : (n + rowsPerSegment - 1) / rowsPerSegment;
+        IntBuffer[] rows = new IntBuffer[segments];
+        for (int segment = 0; segment < segments; segment++) {
+            int firstRow = segment * rowsPerSegment;
+            int rowCount = Math.min(rowsPerSegment, n - firstRow);
+            rows[segment] = channel.map(FileChannel.MapMode.READ_ONLY, start + 4L * firstRow * n, 4L * rowCount * n)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return rows;
+    }
+
+    private static long align(long position, int alignment) {
+        return (position + alignment - 1) / alignment * alignment;
+    }
+
+    public RailNetwork getNetwork() {
+        return network;
+    }
+
+    public long getNetworkChecksum() {
+        return networkChecksum;
+    }
+
+    private int entry(IntBuffer[] matrix, int from, int to) {
+        return matrix[from / rowsPerSegment].get((from % rowsPerSegment) * stations + to);
+    }
+
+    @Override
+    public int time(int from, int to) {
+        return entry(distances, from, to);
+    }
+
+    @Override
+    public int[] path(int from, int to) {
+        if (time(from, to) == ComputePath.UNREACHABLE) {
+            return null;
+        }
+        int length = 0;
+        for (int station = to; station != RailNetwork.NO_STATION; station = entry(previous, from, station)) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int station = to; station != RailNetwork.NO_STATION; station = entry(previous, from, station)) {
+            path[--length] = station;
+        }
+        return path;
+    }
+
+    @Override
+    public double averageTime(int from) {
+        return averageTimes[from];
+    }
+
+    /** Little-endian writes through one direct buffer. */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void padTo(int alignment) throws IOException {
+            long position = written + buffer.position();
+            for (long i = position; i < align(position, alignment); i++) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * What a disruption changed in a {@link LiveSchedule}: planned moves that no longer happen and
+ * the moves replacing them, in the train log format, and packages that no train can carry now.
+ */
+@Getter
+@AllArgsConstructor
+public class ScheduleDiff {
+    private List<String> cancelledMoves;
+    private List<String> plannedMoves;
+    private List<String> unplannedPackages;
+
+    public boolean isEmpty() {
+        return cancelledMoves.isEmpty() && plannedMoves.isEmpty() && unplannedPackages.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ScheduleDiff{cancelled=%d moves, planned=%d moves, unplanned=%s}",
+                cancelledMoves.size(), plannedMoves.size(), unplannedPackages);
+    }
+}
@@ -0,0 +1,38 @@
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ShortestPathTree {
+    private final int source;
+    private final int[] distances;
+    private final int[] previous;
+
+    public double averageTime() {
+        double totalDistance = 0;
+        int stationCount = 0;
+        for (int distance : distances) {
+            if (distance != ComputePath.UNREACHABLE) {
+                totalDistance += distance;
+                stationCount++;
+            }
+        }
+        return stationCount > 0 ? totalDistance / stationCount : 0;
+    }
+
+    public int[] pathTo(int destination) {
+        return buildPath(previous, destination);
+    }
+
+    static int[] buildPath(int[] previous, int destination) {
+        int length = 0;
+        for (int station = destination; station != RailNetwork.NO_STATION; station = previous[station]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int station = destination; station != RailNetwork.NO_STATION; station = previous[station]) {
+            path[--length] = station;
+        }
+        return path;
+    }
+}
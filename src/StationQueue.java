@@ -0,0 +1,29 @@
+/**
+ * Min-queue of stations keyed by their tentative distance, as used by Dijkstra.
+ * Keys only ever decrease while queued and polled keys never go down (monotone).
+ */
+public interface StationQueue {
+    void reset(int stations, int maxEdgeWeight);
+
+    void insertOrDecrease(int station, int distance);
+
+    /** Station with the smallest key, or {@link RailNetwork#NO_STATION} when empty. */
+    int poll();
+
+    enum Kind {
+        JDK, BINARY_HEAP, DIAL, RADIX;
+
+        public StationQueue create() {
+            switch (this) {
+                case JDK:
+                    return new JdkStationQueue();
+                case DIAL:
+                    return new DialStationQueue();
+                case RADIX:
+                    return new RadixStationQueue();
+                default:
+                    return new BinaryHeapStationQueue();
+            }
+        }
+    }
+}
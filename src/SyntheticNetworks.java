@@ -0,0 +1,307 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Seeded synthetic instances for benchmarks and load tests: the same shape, sizes and seed always
+ * give the same stations, edges, packages and trains. Stations are named S0.., packages K0.. and
+ * trains Q0..; every train can carry every package, and every network is connected.
+ * Usage: java SyntheticNetworks grid|geometric|hub_and_spoke|random stations edges packages trains [seed]
+ * writes the instance in the README's input format to standard output.
+ */
+public final class SyntheticNetworks {
+    private static final int MAX_PACKAGE_KG = 20;
+    private static final int MAX_TRAIN_KG = 100;
+
+    public enum Shape {
+        /** A lattice of roughly square blocks, 5-15 minutes apart, plus short express links. */
+        GRID,
+        /** Stations scattered on a plane, linked when closer than a radius chosen for the edge count. */
+        GEOMETRIC,
+        /** About sqrt(n)/2 hubs on a fast ring, every other station a spoke of one hub. */
+        HUB_AND_SPOKE,
+        /** A random spanning tree plus uniformly random edges, as the queue benchmark has always used. */
+        RANDOM
+    }
+
+    private SyntheticNetworks() {
+    }
+
+    /**
+     * A connected network of the given shape. {@code edges} is the number of undirected edges to
+     * aim for; a shape never drops below the edges that keep it connected, and the geometric one
+     * only matches it on average.
+     */
+    public static RailNetwork network(Shape shape, int stations, int edges, long seed) {
+        if (stations < 1) {
+            throw new IllegalArgumentException("A network needs at least one station, got " + stations);
+        }
+        Random random = new Random(seed);
+        switch (shape) {
+            case GRID:
+                return grid(stations, edges, random);
+            case GEOMETRIC:
+                return geometric(stations, edges, random);
+            case HUB_AND_SPOKE:
+                return hubAndSpoke(stations, edges, random);
+            default:
+                return random(stations, edges, 60, random);
+        }
+    }
+
+    /** Packages of 1-20 kg between distinct random stations (the same one on a single-station network). */
+    public static List<Package> packages(RailNetwork network, int count, long seed) {
+        Random random = new Random(seed + 1);
+        int n = network.size();
+        List<Package> packages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = random.nextInt(n);
+            int to = n == 1 ? from : (from + 1 + random.nextInt(n - 1)) % n;
+            packages.add(new Package("K" + i, 1 + random.nextInt(MAX_PACKAGE_KG),
+                    new Node(network.nameOf(from)), new Node(network.nameOf(to))));
+        }
+        return packages;
+    }
+
+    /** Trains of 20-100 kg at random stations. */
+    public static List<Train> trains(RailNetwork network, int count, long seed) {
+        Random random = new Random(seed + 2);
+        List<Train> trains = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            trains.add(new Train("Q" + i, MAX_PACKAGE_KG + random.nextInt(MAX_TRAIN_KG - MAX_PACKAGE_KG + 1),
+                    network.nameOf(random.nextInt(network.size()))));
+        }
+        return trains;
+    }
+
+    private static RailNetwork.Builder stations(int stations) {
+        RailNetwork.Builder builder = new RailNetwork.Builder();
+        for (int i = 0; i < stations; i++) {
+            builder.addStation("S" + i);
+        }
+        return builder;
+    }
+
+    private static RailNetwork grid(int stations, int edges, Random random) {
+        RailNetwork.Builder builder = stations(stations);
+        int columns = (int) Math.ceil(Math.sqrt(stations));
+        int added = 0;
+        for (int i = 0; i < stations; i++) {
+            if ((i + 1) % columns != 0 && i + 1 < stations) {
+                builder.addEdge(i, i + 1, 5 + random.nextInt(11));
+                added++;
+            }
+            if (i + columns < stations) {
+                builder.addEdge(i, i + columns, 5 + random.nextInt(11));
+                added++;
+            }
+        }
+        // express links skip up to three blocks in each direction at about two thirds of the local time
+        while (added < edges && stations > 1) {
+            int from = random.nextInt(stations);
+            int row = from / columns + random.nextInt(7) - 3;
+            int column = from % columns + random.nextInt(7) - 3;
+            int to = row * columns + column;
+            if (row < 0 || column < 0 || column >= columns || to >= stations || to == from) {
+                continue;
+            }
+            double blocks = Math.hypot(row - from / columns, column - from % columns);
+            builder.addEdge(from, to, (int) Math.max(1, Math.round(blocks * (5 + random.nextInt(6)) * 2 / 3)));
+            added++;
+        }
+        return builder.build();
+    }
+
+    private static RailNetwork geometric(int stations, int edges, Random random) {
+        RailNetwork.Builder builder = stations(stations);
+        // coordinates are in minutes, on a square that keeps neighbours some ten minutes apart
+        double side = 10 * Math.sqrt(stations);
+        double[] x = new double[stations];
+        double[] y = new double[stations];
+        for (int i = 0; i < stations; i++) {
+            x[i] = random.nextDouble() * side;
+            y[i] = random.nextDouble() * side;
+        }
+        double pairs = Math.max(1, (double) stations * (stations - 1) / 2);
+        double radius = side * Math.sqrt(Math.max(0, edges) / (Math.PI * pairs));
+
+        // stations bucketed into cells one radius wide, so only neighbouring cells are compared
+        int cells = (int) Math.max(1, Math.min(Math.sqrt(stations), radius > 0 ? side / radius : 1));
+        double cellSize = side / cells;
+        List<List<Integer>> buckets = new ArrayList<>(cells * cells);
+        for (int c = 0; c < cells * cells; c++) {
+            buckets.add(new ArrayList<>());
+        }
+        int[] cellOf = new int[stations];
+        for (int i = 0; i < stations; i++) {
+            int row = Math.min(cells - 1, (int) (y[i] / cellSize));
+            int column = Math.min(cells - 1, (int) (x[i] / cellSize));
+            cellOf[i] = row * cells + column;
+            buckets.get(cellOf[i]).add(i);
+        }
+
+        int[] component = new int[stations];
+        for (int i = 0; i < stations; i++) {
+            component[i] = i;
+        }
+        for (int i = 0; i < stations; i++) {
+            int row = cellOf[i] / cells;
+            int column = cellOf[i] % cells;
+            for (int r = Math.max(0, row - 1); r <= Math.min(cells - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(cells - 1, column + 1); c++) {
+                    for (int j : buckets.get(r * cells + c)) {
+                        double distance = j > i ? Math.hypot(x[i] - x[j], y[i] - y[j]) : Double.MAX_VALUE;
+                        if (distance <= radius) {
+                            builder.addEdge(i, j, minutes(distance));
+                            union(component, i, j);
+                        }
+                    }
+                }
+            }
+        }
+
+        // walking the cells row by row, alternating direction, links each component to a nearby one
+        int previous = -1;
+        for (int row = 0; row < cells; row++) {
+            for (int k = 0; k < cells; k++) {
+                int column = row % 2 == 0 ? k : cells - 1 - k;
+                for (int station : buckets.get(row * cells + column)) {
+                    if (previous >= 0 && find(component, previous) != find(component, station)) {
+                        builder.addEdge(previous, station,
+                                minutes(Math.hypot(x[previous] - x[station], y[previous] - y[station])));
+                        union(component, previous, station);
+                    }
+                    previous = station;
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static RailNetwork hubAndSpoke(int stations, int edges, Random random) {
+        RailNetwork.Builder builder = stations(stations);
+        int hubs = Math.max(1, (int) Math.round(Math.sqrt(stations) / 2));
+        int added = 0;
+        for (int hub = 1; hub < hubs; hub++) {
+            builder.addEdge(hub - 1, hub, 20 + random.nextInt(41));
+            added++;
+        }
+        if (hubs > 2) {
+            builder.addEdge(hubs - 1, 0, 20 + random.nextInt(41));
+            added++;
+        }
+        int[] home = new int[stations];
+        List<List<Integer>> spokes = new ArrayList<>(hubs);
+        for (int hub = 0; hub < hubs; hub++) {
+            spokes.add(new ArrayList<>());
+        }
+        for (int station = hubs; station < stations; station++) {
+            home[station] = random.nextInt(hubs);
+            spokes.get(home[station]).add(station);
+            builder.addEdge(station, home[station], 5 + random.nextInt(26));
+            added++;
+        }
+        // extra edges alternate between a spoke's link to a second hub and a local link to a sibling
+        while (added < edges && stations > hubs && (hubs > 1 || stations > hubs + 1)) {
+            int spoke = hubs + random.nextInt(stations - hubs);
+            List<Integer> siblings = spokes.get(home[spoke]);
+            if (added % 2 == 0 && hubs > 1) {
+                int hub = (home[spoke] + 1 + random.nextInt(hubs - 1)) % hubs;
+                builder.addEdge(spoke, hub, 15 + random.nextInt(46));
+            } else if (siblings.size() > 1) {
+                int sibling = siblings.get(random.nextInt(siblings.size()));
+                if (sibling == spoke) {
+                    continue;
+                }
+                builder.addEdge(spoke, sibling, 3 + random.nextInt(13));
+            } else {
+                continue;
+            }
+            added++;
+        }
+        return builder.build();
+    }
+
+    /**
+     * A random spanning tree keeps it connected; the remaining edges join uniformly random
+     * stations, loops and repeats included. Draws from {@code random} in a fixed order, so callers
+     * can keep using it afterwards.
+     */
+    static RailNetwork random(int stations, int edges, int maxMinutes, Random random) {
+        RailNetwork.Builder builder = stations(stations);
+        for (int i = 1; i < stations; i++) {
+            builder.addEdge("S" + random.nextInt(i), "S" + i, 1 + random.nextInt(maxMinutes));
+        }
+        for (int i = stations - 1; i < edges; i++) {
+            builder.addEdge("S" + random.nextInt(stations), "S" + random.nextInt(stations), 1 + random.nextInt(maxMinutes));
+        }
+        return builder.build();
+    }
+
+    private static int minutes(double distance) {
+        return (int) Math.max(1, Math.round(distance));
+    }
+
+    private static int find(int[] component, int station) {
+        while (component[station] != station) {
+            component[station] = component[component[station]];
+            station = component[station];
+        }
+        return station;
+    }
+
+    private static void union(int[] component, int a, int b) {
+        component[find(component, a)] = find(component, b);
+    }
+
+    /** Writes the network, packages and trains in the README's input format. */
+    public static void write(Writer out, RailNetwork network, List<Package> packages, List<Train> trains)
+            throws IOException {
+        out.write(network.size() + "\n");
+        for (int station = 0; station < network.size(); station++) {
+            out.write(network.nameOf(station) + "\n");
+        }
+        int edges = 0;
+        StringBuilder lines = new StringBuilder();
+        for (int station = 0; station < network.size(); station++) {
+            for (int e = network.firstEdge(station); e < network.endEdge(station); e++) {
+                // each undirected edge is stored in both directions; loops add nothing to a route
+                if (network.target(e) > station) {
+                    lines.append('E').append(edges++).append(',').append(network.nameOf(station)).append(',')
+                            .append(network.nameOf(network.target(e))).append(',').append(network.weight(e)).append('\n');
+                }
+            }
+        }
+        out.write(edges + "\n");
+        out.write(lines.toString());
+        out.write(packages.size() + "\n");
+        for (Package pkg : packages) {
+            out.write(pkg.getName() + "," + pkg.getWeightInKg() + "," + pkg.getStartingNode().getName() + ","
+                    + pkg.getEndNode().getName() + "\n");
+        }
+        out.write(trains.size() + "\n");
+        for (Train train : trains) {
+            out.write(train.getName() + "," + train.getCapacityInKg() + "," + train.getCurrentStation() + "\n");
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            throw new IllegalArgumentException(
+                    "Usage: java SyntheticNetworks grid|geometric|hub_and_spoke|random stations edges packages trains [seed]");
+        }
+        Shape shape = Shape.valueOf(args[0].toUpperCase(Locale.ROOT));
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42L;
+        RailNetwork network = network(shape, Integer.parseInt(args[1]), Integer.parseInt(args[2]), seed);
+        try {
+            write(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), network,
+                    packages(network, Integer.parseInt(args[3]), seed), trains(network, Integer.parseInt(args[4]), seed));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.function.IntFunction;
+
+/**
+ * Writes moves in the README's output format to a writer, which is expected to buffer: every
+ * line is assembled in one reused builder and handed over in a single call.
+ */
+public class TextMoveLog implements MoveLog {
+    private final Writer out;
+    private final RailNetwork network;
+    private final IntFunction<String> trainNames;
+    private final IntFunction<String> packageNames;
+    private final StringBuilder line = new StringBuilder(128);
+
+    public TextMoveLog(Writer out, RailNetwork network, IntFunction<String> trainNames,
+                       IntFunction<String> packageNames) {
+        this.out = out;
+        this.network = network;
+        this.trainNames = trainNames;
+        this.packageNames = packageNames;
+    }
+
+    @Override
+    public void move(int time, int train, int from, int to, int[] pickups, int pickupCount, int[] deliveries,
+                     int deliveryCount, boolean arrives) {
+        line.setLength(0);
+        format(line, network, time, trainNames.apply(train), from, to, pickups, pickupCount, packageNames, arrives);
+        line.append('\n');
+        write(line);
+    }
+
+    /** Writes a line that is not a move, such as a train's heading. */
+    public void println(String text) {
+        line.setLength(0);
+        line.append(text).append('\n');
+        write(line);
+    }
+
+    private void write(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write moves", e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write moves", e);
+        }
+    }
+
+    static void format(StringBuilder line, RailNetwork network, int time, String train, int from, int to,
+                       int[] packages, int count, IntFunction<String> packageNames, boolean arrives) {
+        line.append("W=").append(time)
+                .append(", T=").append(train)
+                .append(", N1=").append(network.nameOf(from))
+                .append(", P1=[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            line.append(packageNames.apply(packages[i]));
+        }
+        line.append("], N2=").append(network.nameOf(to));
+        // the drop-off column names the stop reached, as it always has
+        line.append(", P2=[").append(arrives ? network.nameOf(to) : "").append(']');
+    }
+}
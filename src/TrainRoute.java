@@ -3,13 +3,11 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.util.List;
-
 @Setter
 @Getter
 @NoArgsConstructor
 @AllArgsConstructor
 public class TrainRoute {
     int time;
-    List<String> shortestPath;
+    int[] shortestPath;
 }
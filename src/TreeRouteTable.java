@@ -0,0 +1,18 @@
+/**
+ * The writable side of a table built from per-source shortest-path trees: {@link ComputePath}
+ * stores the trees while building it and, after an edge change, repairs a copy one source at a
+ * time. A finished {@link Routing} hands out only the {@link RouteTable} side, so shared
+ * routings stay read-only.
+ */
+interface TreeRouteTable extends RouteTable {
+    void store(ShortestPathTree tree);
+
+    /** The stored tree rooted at {@code source}, or null if there is none. */
+    ShortestPathTree tree(int source);
+
+    /**
+     * A table with the same trees that answers for the given network, so the trees an edge change
+     * affects can be stored into the copy while readers keep using this table.
+     */
+    TreeRouteTable copyFor(RailNetwork network);
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Incremental repairs after edge changes against routing the changed network from scratch. */
+class ChangeEdgeTest {
+
+    @Test
+    void repairsMatchRecomputation() {
+        RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 100, 160, 5);
+        Random random = new Random(5);
+        for (ComputePath.Storage storage : new ComputePath.Storage[]{ComputePath.Storage.PATHS, ComputePath.Storage.COMPACT}) {
+            Routing routing = ComputePath.compute(network, storage, 1);
+            for (int change = 0; change < 20; change++) {
+                String from = "S" + random.nextInt(network.size());
+                String to = "S" + random.nextInt(network.size());
+                int minutes = random.nextInt(4) == 0 ? -1 : 1 + random.nextInt(30);
+                Routing changed = ComputePath.changeEdge(routing, from, to, minutes);
+                assertMatchesRecomputation(routing, changed, storage + " " + from + " - " + to + " = " + minutes);
+                routing = changed;
+            }
+        }
+    }
+
+    @Test
+    void lazyTablesReportChangesOnlyOnceEverySourceIsSolved() {
+        RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 64, 100, 9);
+        Routing routing = ComputePath.compute(network, ComputePath.Storage.LAZY, 1);
+        routing.time(0, 1);
+        Edge edge = new Edge("E", new Node("S0"), new Node("S1"), 1);
+        assertNull(routing.closeEdge(edge).getChanges(), "sources without a tree may have changed too");
+
+        for (int source = 0; source < network.size(); source++) {
+            routing.averageTime(source);
+        }
+        Routing closed = routing.closeEdge(edge);
+        assertNotNull(closed.getChanges());
+        assertMatchesRecomputation(routing, closed, "lazy");
+    }
+
+    @Test
+    void rebuiltBackendsDoNotKnowTheirChanges() {
+        RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 64, 100, 9);
+        Edge edge = new Edge("E", new Node("S0"), new Node("S1"), 1);
+        assertNull(ComputePath.compute(network, ComputePath.Storage.CH, 1).closeEdge(edge).getChanges());
+    }
+
+    /** Every pair whose time changed is reported with both times, and every report is right. */
+    private static void assertMatchesRecomputation(Routing before, Routing after, String message) {
+        RailNetwork network = after.getNetwork();
+        Routing expected = ComputePath.compute(network, ComputePath.Storage.COMPACT, 1);
+        List<RouteChange> changes = after.getChanges();
+        assertNotNull(changes, message);
+        Map<Long, RouteChange> reported = new HashMap<>();
+        for (RouteChange change : changes) {
+            assertTrue(change.getFrom() < change.getTo(), message);
+            assertNull(reported.put(((long) change.getFrom() << 32) | change.getTo(), change), message + ": twice");
+            assertEquals(before.time(change.getFrom(), change.getTo()), change.getOldTime(), message);
+            assertEquals(expected.time(change.getFrom(), change.getTo()), change.getNewTime(), message);
+        }
+        for (int from = 0; from < network.size(); from++) {
+            for (int to = 0; to < network.size(); to++) {
+                assertEquals(expected.time(from, to), after.time(from, to), message + ": " + from + " -> " + to);
+                if (from < to && expected.time(from, to) != before.time(from, to)) {
+                    assertTrue(reported.containsKey(((long) from << 32) | to), message + ": missing " + from + " - " + to);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The exact solver and the makespan bound against every route of every assignment on tiny instances. */
+class ExactSolverTest {
+
+    @Test
+    void matchesBruteForceAndStaysAboveTheBound() {
+        for (long seed = 1; seed <= 30; seed++) {
+            Random random = new Random(seed);
+            RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.RANDOM, 8, 12, seed);
+            List<Package> packages = SyntheticNetworks.packages(network, 2 + random.nextInt(3), seed);
+            List<Train> trains = new ArrayList<>();
+            for (int t = 1 + random.nextInt(2); t > 0; t--) {
+                // tight enough that some bundles do not fit
+                trains.add(new Train("Q" + t, 20 + random.nextInt(15), network.nameOf(random.nextInt(network.size()))));
+            }
+            PlanningContext context = new PlanningContext(ComputePath.compute(network, ComputePath.Storage.COMPACT, 1),
+                    trains, packages);
+
+            RoutePlan heuristic = DeliveryPlanner.auctionPlan(context, DeliveryPlanner.AuctionWeights.DEFAULT);
+            RoutePlan exact = ExactSolver.solve(heuristic, 2);
+            long optimum = bruteForce(new RoutePlan(context));
+
+            assertEquals(packages.size(), exact.plannedPackages(), "seed " + seed);
+            assertEquals(optimum, exact.makespan(), "seed " + seed);
+            for (int t = 0; t < exact.trainCount(); t++) {
+                assertTrue(exact.fits(t, exact.stops(t)), "seed " + seed + ", train " + t);
+            }
+            // the greedy routes may leave out a package that no longer fits, and finish earlier for it
+            if (heuristic.plannedPackages() == packages.size()) {
+                assertTrue(heuristic.makespan() >= optimum, "seed " + seed);
+            }
+            assertTrue(MakespanBound.of(exact).getValue() <= optimum, "seed " + seed);
+        }
+    }
+
+    /** Smallest makespan over all assignments of packages to trains, each train taking its best route. */
+    private static long bruteForce(RoutePlan plan) {
+        int trains = plan.trainCount();
+        int packages = plan.packageCount();
+        long best = Long.MAX_VALUE;
+        int[] owner = new int[packages];
+        for (int assignment = 0; assignment < Math.pow(trains, packages); assignment++) {
+            for (int p = 0, rest = assignment; p < packages; p++, rest /= trains) {
+                owner[p] = rest % trains;
+            }
+            long makespan = 0;
+            for (int t = 0; t < trains && makespan < best; t++) {
+                List<Integer> own = new ArrayList<>();
+                for (int p = 0; p < packages; p++) {
+                    if (owner[p] == t) {
+                        own.add(p);
+                    }
+                }
+                long route = bestRoute(plan, t, own, new int[packages], plan.startStation(t), 0, own.size() * 2);
+                makespan = route == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(makespan, plan.startTime(t) + route);
+            }
+            best = Math.min(best, makespan);
+        }
+        return best;
+    }
+
+    /** state[p]: 0 untouched, 1 on board, 2 delivered. */
+    private static long bestRoute(RoutePlan plan, int train, List<Integer> own, int[] state, int location, int load,
+                                  int stopsLeft) {
+        if (stopsLeft == 0) {
+            return 0;
+        }
+        long best = Long.MAX_VALUE;
+        for (int p : own) {
+            if (state[p] == 2 || (state[p] == 0 && load + plan.weight(p) > plan.capacity(train))) {
+                continue;
+            }
+            int stop = state[p] == 0 ? RoutePlan.pickupStop(p) : RoutePlan.deliveryStop(p);
+            int station = plan.station(stop);
+            state[p]++;
+            long rest = bestRoute(plan, train, own, state, station,
+                    load + (state[p] == 1 ? plan.weight(p) : -plan.weight(p)), stopsLeft - 1);
+            state[p]--;
+            if (rest != Long.MAX_VALUE) {
+                best = Math.min(best, plan.leg(location, station) + rest);
+            }
+        }
+        return best;
+    }
+}
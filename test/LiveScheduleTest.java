@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Disruptions on a line A - B - C with a slow direct A - C edge and a remote depot D behind C. */
+class LiveScheduleTest {
+
+    private static Routing routing() {
+        RailNetwork.Builder builder = new RailNetwork.Builder();
+        builder.addStation("A");
+        builder.addStation("B");
+        builder.addStation("C");
+        builder.addStation("D");
+        builder.addEdge("A", "B", 10);
+        builder.addEdge("B", "C", 10);
+        builder.addEdge("A", "C", 50);
+        builder.addEdge("C", "D", 100);
+        return ComputePath.compute(builder.build(), ComputePath.Storage.COMPACT, 1);
+    }
+
+    private static Package pkg(String name, String from, String to) {
+        return new Package(name, 5, new Node(from), new Node(to));
+    }
+
+    @Test
+    void brokenTrainsTakeNoMorePackages() {
+        Train a = new Train("TA", 50, "A");
+        Train c = new Train("TC", 50, "C");
+        LiveSchedule live = new LiveSchedule(routing(), Arrays.asList(a, c), null);
+        live.breakdown(a);
+
+        assertSame(c, live.submit(pkg("K1", "A", "B"), 10));
+        assertSame(c, live.submit(pkg("K2", "A", "C"), 40));
+        assertThrows(IllegalArgumentException.class, () -> live.breakdown(a));
+        live.drain();
+        assertTrue(a.getLog().isEmpty());
+    }
+
+    @Test
+    void packagesOnABrokenTrainAreHandedOver() {
+        Train a = new Train("TA", 50, "A");
+        Train d = new Train("TD", 50, "D");
+        LiveSchedule live = new LiveSchedule(routing(), Arrays.asList(a, d), null);
+        assertSame(a, live.submit(pkg("K1", "A", "C"), 0));
+        assertSame(a, live.submit(pkg("K2", "B", "C"), 0));
+        live.advanceTo(1);
+
+        // TA is on its way to B to pick up K2, so both come off at B when it gets there
+        ScheduleDiff diff = live.breakdown(a);
+        assertTrue(diff.getUnplannedPackages().isEmpty());
+        assertTrue(live.openStops(d).isEmpty());
+        live.advanceTo(10);
+        assertEquals(List.of("B", "B", "C", "C"), live.openStops(d));
+        live.drain();
+        assertEquals(1, a.getLog().size(), a.getLog().toString());
+        assertTrue(d.getLog().stream().anyMatch(line -> line.contains("K1")), d.getLog().toString());
+        assertTrue(d.getLog().stream().anyMatch(line -> line.contains("K2")), d.getLog().toString());
+    }
+
+    @Test
+    void delaysPostponeTheDeparture() {
+        Train a = new Train("TA", 50, "A");
+        LiveSchedule live = new LiveSchedule(routing(), List.of(a), null);
+        live.submit(pkg("K1", "A", "B"), 0);
+        live.delay(a, 15);
+        assertThrows(IllegalArgumentException.class, () -> live.delay(a, -1));
+        live.drain();
+        assertTrue(a.getLog().get(0).startsWith("W=15,"), a.getLog().toString());
+        assertEquals(25, a.getCurrentTime());
+    }
+
+    @Test
+    void closedEdgesAreRoutedAround() {
+        Train a = new Train("TA", 50, "A");
+        LiveSchedule live = new LiveSchedule(routing(), List.of(a), null);
+        live.submit(pkg("K1", "A", "C"), 0);
+
+        ScheduleDiff diff = live.closeEdge(new Edge("E", new Node("A"), new Node("B"), 10));
+        assertFalse(diff.getCancelledMoves().isEmpty());
+        assertFalse(diff.getPlannedMoves().isEmpty());
+        live.drain();
+        assertEquals(1, a.getLog().size(), a.getLog().toString());
+        assertTrue(a.getLog().get(0).contains("N2=C"));
+        assertEquals(50, a.getCurrentTime());
+    }
+}
@@ -0,0 +1,88 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanningServerTest {
+    private static final String INSTANCE = "3\nA\nB\nC\n2\nE1,A,B,30\nE2,B,C,10\n1\nK1,5,A,C\n1\nQ1,6,B\n";
+    // the JSON /stats answers with: objects of string keys and numbers or strings, nothing else
+    private static final Pattern VALUE = Pattern.compile("\"\\w+\": (-?\\d+(\\.\\d+)?(?=, \"|})|\"[^\"]*\"|\\{)");
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Locale locale;
+    private PlanningServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        // a decimal comma must not end up in the JSON
+        locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        server = PlanningServer.start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+        Locale.setDefault(locale);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void plansLikeTheBatchMode() throws Exception {
+        InstanceLoader.Instance instance = InstanceLoader.load(
+                new ByteArrayInputStream(INSTANCE.getBytes(StandardCharsets.UTF_8)), "test");
+        StringWriter batch = new StringWriter();
+        DeliveryPlanner.assignPackage(new PlanningContext(ComputePath.compute(instance.getNetwork().build()),
+                instance.getTrains(), instance.getPackages()), batch);
+
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<String> response = send("POST", "/plan", INSTANCE);
+            assertEquals(200, response.statusCode());
+            assertEquals(batch.toString(), response.body());
+        }
+
+        HttpResponse<String> stats = send("GET", "/stats", null);
+        assertEquals(200, stats.statusCode());
+        String json = stats.body().trim();
+        assertTrue(json.startsWith("{") && json.endsWith("}"), json);
+        Matcher values = VALUE.matcher(json);
+        int count = 0;
+        while (values.find()) {
+            count++;
+        }
+        // every key is followed by a well-formed value
+        assertEquals(json.split("\": ").length - 1, count, json);
+        assertTrue(json.contains("\"requests\": 2"), json);
+        assertTrue(json.contains("\"hits\": 1, \"misses\": 1"), json);
+    }
+
+    @Test
+    void rejectsBadInputAndWrongMethods() throws Exception {
+        HttpResponse<String> bad = send("POST", "/plan", "3\nA\nB\n");
+        assertEquals(400, bad.statusCode());
+        assertFalse(bad.body().isBlank());
+
+        assertEquals(405, send("GET", "/plan", null).statusCode());
+        assertEquals(405, send("POST", "/stats", "").statusCode());
+        assertTrue(send("GET", "/stats", null).body().contains("\"failed\": 1"));
+    }
+}
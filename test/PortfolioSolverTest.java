@@ -0,0 +1,39 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PortfolioSolverTest {
+
+    @Test
+    void keepsToTheTimeLimit() {
+        RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 1_000, 1_500, 1);
+        PlanningContext context = new PlanningContext(ComputePath.compute(network, ComputePath.Storage.COMPACT, 1),
+                SyntheticNetworks.trains(network, 40, 1), SyntheticNetworks.packages(network, 3_000, 1));
+        for (long limit : new long[]{0, 50, 200}) {
+            long start = System.nanoTime();
+            PortfolioSolver solver = PortfolioSolver.solve(context, 4, limit);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            // a whole auction or insertion of every package takes seconds here
+            assertTrue(elapsed < limit + 1_000, limit + " ms limit took " + elapsed + " ms");
+            assertNotNull(solver.getPlan());
+        }
+    }
+
+    @Test
+    void plansEveryServablePackageNextToAnUnservableOne() {
+        RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 100, 150, 1);
+        List<Package> packages = new ArrayList<>(SyntheticNetworks.packages(network, 30, 1));
+        packages.add(new Package("HEAVY", 1_000, new Node("S1"), new Node("S2")));
+        PlanningContext context = new PlanningContext(ComputePath.compute(network, ComputePath.Storage.COMPACT, 1),
+                SyntheticNetworks.trains(network, 4, 1), packages);
+
+        RoutePlan plan = PortfolioSolver.solve(context, 4, 500).getPlan();
+        MakespanBound bound = MakespanBound.of(new RoutePlan(context));
+        assertEquals(30, bound.getServablePackages());
+        assertEquals(30, plan.plannedPackages());
+        assertTrue(plan.makespan() >= bound.getValue());
+    }
+}
@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** {@link RouteCostKernel} against the stream and boxed-collection bundle simulation it replaced. */
+class RouteCostKernelTest {
+
+    @Test
+    void agreesWithTheLegacySimulation() {
+        int stations = 1_000;
+        Random random = new Random(42);
+        Routing routing = ComputePath.compute(SyntheticNetworks.random(stations, stations - 1 + stations * 3 / 2, 60, random),
+                ComputePath.Storage.COMPACT, 1);
+
+        RouteCostKernel kernel = RouteCostKernel.forCurrentThread();
+        for (int bundleSize : new int[]{1, 2, 5, 12, 30}) {
+            for (int b = 0; b < 200; b++) {
+                // few distinct pickups, as in real bundles, so the per-pickup grouping matters
+                int[] pickups = random.ints(bundleSize, 0, stations / 50).map(s -> s * 50).toArray();
+                int[] destinations = random.ints(bundleSize, 0, stations).toArray();
+                int start = random.nextInt(stations);
+
+                kernel.clear();
+                for (int i = 0; i < bundleSize; i++) {
+                    kernel.add(pickups[i], destinations[i], 1);
+                }
+                assertEquals(legacyDeliveryTime(routing, start, pickups, destinations), kernel.deliveryTime(routing, start),
+                        "delivery time, bundle " + b + " of " + bundleSize);
+                assertEquals(legacyFinalLocation(routing, start, destinations), kernel.finalLocation(routing, start),
+                        "final station, bundle " + b + " of " + bundleSize);
+            }
+        }
+    }
+
+    private static double legacyDeliveryTime(Routing routing, int start, int[] pickups, int[] destinations) {
+        Map<Integer, List<Integer>> pickupGroups = new HashMap<>();
+        for (int i = 0; i < pickups.length; i++) {
+            pickupGroups.computeIfAbsent(pickups[i], key -> new ArrayList<>()).add(destinations[i]);
+        }
+
+        int currentLocation = start;
+        double totalTime = 0;
+        Set<Integer> visitedPickups = new HashSet<>();
+        while (visitedPickups.size() < pickupGroups.size()) {
+            Integer nearestPickup = legacyNearest(routing, currentLocation, pickupGroups.keySet(), visitedPickups);
+            if (nearestPickup == null) {
+                break;
+            }
+            totalTime += routing.time(currentLocation, nearestPickup);
+            currentLocation = nearestPickup;
+            visitedPickups.add(nearestPickup);
+
+            int[] dropOffs = pickupGroups.get(nearestPickup).stream().mapToInt(Integer::intValue).toArray();
+            totalTime += legacyWalkTime(routing, currentLocation, dropOffs);
+            currentLocation = legacyFinalLocation(routing, currentLocation, dropOffs);
+        }
+        return totalTime;
+    }
+
+    private static double legacyWalkTime(Routing routing, int start, int[] destinations) {
+        Set<Integer> stops = Arrays.stream(destinations).boxed().collect(Collectors.toSet());
+        Set<Integer> visited = new HashSet<>();
+        int currentLocation = start;
+        double time = 0;
+        while (visited.size() < stops.size()) {
+            Integer nearest = legacyNearest(routing, currentLocation, stops, visited);
+            if (nearest == null) {
+                break;
+            }
+            time += routing.time(currentLocation, nearest);
+            currentLocation = nearest;
+            visited.add(nearest);
+        }
+        return time;
+    }
+
+    private static int legacyFinalLocation(Routing routing, int start, int[] destinations) {
+        Set<Integer> stops = Arrays.stream(destinations).boxed().collect(Collectors.toSet());
+        Set<Integer> visited = new HashSet<>();
+        int currentLocation = start;
+        while (visited.size() < stops.size()) {
+            Integer nearest = legacyNearest(routing, currentLocation, stops, visited);
+            if (nearest == null) {
+                break;
+            }
+            currentLocation = nearest;
+            visited.add(nearest);
+        }
+        return currentLocation;
+    }
+
+    /** Lower station id on equal times, matching the kernel. */
+    private static Integer legacyNearest(Routing routing, int location, Collection<Integer> stops,
+                                         Set<Integer> visited) {
+        Integer nearest = null;
+        int shortestTime = Integer.MAX_VALUE;
+        for (Integer stop : stops) {
+            if (visited.contains(stop)) {
+                continue;
+            }
+            int time = routing.time(location, stop);
+            if (time < shortestTime || (time == shortestTime && nearest != null && stop < nearest)) {
+                shortestTime = time;
+                nearest = stop;
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,69 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Every backend and queue against plain Dijkstra on each synthetic shape. */
+class RouteTableTest {
+    private static final int STATIONS = 150;
+
+    private static RailNetwork network(SyntheticNetworks.Shape shape) {
+        return SyntheticNetworks.network(shape, STATIONS, STATIONS * 2, 7);
+    }
+
+    @Test
+    void backendsMatchDijkstra() {
+        for (SyntheticNetworks.Shape shape : SyntheticNetworks.Shape.values()) {
+            RailNetwork network = network(shape);
+            for (ComputePath.Storage storage : new ComputePath.Storage[]{
+                    ComputePath.Storage.PATHS, ComputePath.Storage.LAZY, ComputePath.Storage.CH, ComputePath.Storage.ALT}) {
+                RouteTable table = ComputePath.compute(network, storage, 1).getTable();
+                for (int source = 0; source < network.size(); source++) {
+                    int[] expected = ComputePath.djikstra(network, source).getDistances();
+                    for (int target = 0; target < network.size(); target++) {
+                        assertEquals(expected[target], table.time(source, target),
+                                storage + " on " + shape + ", " + source + " -> " + target);
+                        assertPathTakes(network, table.path(source, target), source, target, expected[target]);
+                        TrainRoute route = table.route(source, target);
+                        if (route != null) {
+                            assertEquals(expected[target], route.getTime());
+                        }
+                        assertPathTakes(network, route == null ? null : route.getShortestPath(), source, target,
+                                expected[target]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void queuesAgree() {
+        RailNetwork network = SyntheticNetworks.random(2_000, 2_000 - 1 + 3_000, 60, new Random(42));
+        int[] sources = new Random(43).ints(10, 0, network.size()).toArray();
+        for (int source : sources) {
+            int[] expected = ComputePath.djikstra(network, source, StationQueue.Kind.BINARY_HEAP.create()).getDistances();
+            for (StationQueue.Kind kind : StationQueue.Kind.values()) {
+                assertArrayEquals(expected, ComputePath.djikstra(network, source, kind.create()).getDistances(),
+                        kind + " from " + source);
+            }
+        }
+    }
+
+    private static void assertPathTakes(RailNetwork network, int[] path, int from, int to, int time) {
+        if (time == ComputePath.UNREACHABLE) {
+            assertNull(path);
+            return;
+        }
+        assertNotNull(path, from + " -> " + to);
+        assertEquals(from, path[0]);
+        assertEquals(to, path[path.length - 1]);
+        int total = 0;
+        for (int i = 1; i < path.length; i++) {
+            int edge = network.edgeTime(path[i - 1], path[i]);
+            assertTrue(edge >= 0, "no edge " + path[i - 1] + " - " + path[i]);
+            total += edge;
+        }
+        assertEquals(time, total, "path " + from + " -> " + to);
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void lookupsMatchTheSavedTable() throws IOException {
+        RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.GEOMETRIC, 200, 400, 3);
+        RouteTable table = ComputePath.compute(network, ComputePath.Storage.COMPACT, 1).getTable();
+        Path file = ComputePath.savedFile(directory.toString(), network, "snapshot");
+        RoutingSnapshot.save(file, network, table);
+
+        RoutingSnapshot snapshot = RoutingSnapshot.load(file, network);
+        assertNotNull(snapshot);
+        for (int source = 0; source < network.size(); source++) {
+            assertEquals(table.averageTime(source), snapshot.averageTime(source), 1e-9);
+            for (int target = 0; target < network.size(); target++) {
+                assertEquals(table.time(source, target), snapshot.time(source, target));
+                assertArrayEquals(table.path(source, target), snapshot.path(source, target));
+            }
+        }
+        assertTrue(RoutingSnapshot.load(file).getNetwork().hasSameLayout(network));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count(), "temporary files are moved or removed");
+        }
+    }
+
+    @Test
+    void networksGetFilesOfTheirOwn() throws IOException {
+        RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 50, 80, 1);
+        RailNetwork other = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 50, 80, 2);
+        Path file = ComputePath.savedFile(directory.toString(), network, "snapshot");
+        assertNotEquals(file, ComputePath.savedFile(directory.toString(), other, "snapshot"));
+
+        RoutingSnapshot.save(file, network, ComputePath.compute(network, ComputePath.Storage.COMPACT, 1).getTable());
+        assertNull(RoutingSnapshot.load(file, other));
+    }
+
+    @Test
+    void checksumCollisionsAreNotMistakenForAMatch() throws IOException {
+        RailNetwork network = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 50, 80, 1);
+        RailNetwork other = SyntheticNetworks.network(SyntheticNetworks.Shape.GRID, 50, 80, 2);
+        assertEquals(network.size(), other.size());
+
+        Path snapshot = directory.resolve("collision.snapshot");
+        RoutingSnapshot.save(snapshot, network, ComputePath.compute(network, ComputePath.Storage.COMPACT, 1).getTable());
+        forgeChecksum(snapshot, 8, ByteOrder.LITTLE_ENDIAN, other.checksum());
+        assertNull(RoutingSnapshot.load(snapshot, other));
+
+        Path hierarchy = directory.resolve("collision.ch");
+        ContractionHierarchy.build(network, 1).save(hierarchy, network);
+        assertNotNull(ContractionHierarchy.load(hierarchy, network));
+        forgeChecksum(hierarchy, 8, ByteOrder.BIG_ENDIAN, other.checksum());
+        assertNull(ContractionHierarchy.load(hierarchy, other));
+    }
+
+    private static void forgeChecksum(Path file, int offset, ByteOrder order, long checksum) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+            out.seek(offset);
+            out.write(ByteBuffer.allocate(8).order(order).putLong(checksum).array());
+        }
+    }
+}